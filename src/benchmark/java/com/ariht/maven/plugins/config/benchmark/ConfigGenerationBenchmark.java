@@ -0,0 +1,219 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.benchmark;
+
+import com.ariht.maven.plugins.config.generator.CompiledTemplate;
+import com.ariht.maven.plugins.config.generator.ConfigGeneratorImpl;
+import com.ariht.maven.plugins.config.generator.FilterLoader;
+import com.ariht.maven.plugins.config.generator.FilterSet;
+import com.ariht.maven.plugins.config.generator.FilterValues;
+import com.ariht.maven.plugins.config.generator.KeyDictionary;
+import com.ariht.maven.plugins.config.generator.TemplateCompiler;
+import com.ariht.maven.plugins.config.io.DirectoryReader;
+import com.ariht.maven.plugins.config.io.FileInfo;
+import com.ariht.maven.plugins.config.io.OutputWriter;
+import com.ariht.maven.plugins.config.parameters.ConfigGeneratorParameters;
+import com.ariht.maven.plugins.config.parameters.ConfigGeneratorParametersBuilder;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each phase of config generation measured on its own against a generated corpus, plus the
+ * whole generate goal end to end. Every phase covers all filters and templates in the corpus:
+ *
+ * directoryScan - reading the filters and templates directories
+ * filterParse - loading every filter with its properties
+ * valueExpansion - expanding placeholders inside filter values
+ * substitution - rendering every template against every filter with plain value lookup
+ * substitutionWithMissingCheck - the same while recording missing properties, the difference
+ * from substitution being the cost of the missing property check
+ * write - writing already rendered output to disk
+ *
+ * Anything logged as an error fails the run, so a broken corpus never reports timings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConfigGenerationBenchmark {
+
+    private static final String PREFIX = "${";
+    private static final String SUFFIX = "}";
+
+    @Param({"10"})
+    public int filterCount;
+
+    @Param({"200"})
+    public int keysPerFilter;
+
+    @Param({"50"})
+    public int templateCount;
+
+    @Param({"4096"})
+    public int templateSize;
+
+    @Param({"0.05"})
+    public double placeholderDensity;
+
+    private final QuietLog log = new QuietLog();
+    private Corpus corpus;
+    private ConfigGeneratorParameters parameters;
+    private List<FileInfo> filters;
+    private FilterSet filterSet;
+    // Shared by every filter as it is when generating
+    private KeyDictionary dictionary;
+    private List<FilterValues> filterValues;
+    private List<CompiledTemplate> compiledTemplates;
+    private List<byte[]> rendered;
+
+    @Setup
+    public void setUp() throws Exception {
+        final File baseDirectory = File.createTempFile("config-generation-benchmark", "");
+        FileUtils.forceDelete(baseDirectory);
+        corpus = new Corpus(baseDirectory, filterCount, keysPerFilter, templateCount, templateSize, placeholderDensity);
+        parameters = getParametersBuilder().build();
+
+        final DirectoryReader directoryReader = new DirectoryReader(log);
+        filters = directoryReader.readFiles(corpus.getFiltersDirectory().getAbsolutePath(), null);
+        filterSet = FilterSet.load(new FilterLoader(parameters), filters);
+        dictionary = filterSet.getDictionary();
+        filterValues = expandAll();
+
+        final TemplateCompiler templateCompiler = new TemplateCompiler(PREFIX, SUFFIX);
+        compiledTemplates = new ArrayList<CompiledTemplate>();
+        for (final FileInfo template : directoryReader.readFiles(corpus.getTemplatesDirectory().getAbsolutePath(), null)) {
+            compiledTemplates.add(templateCompiler.compile(FileUtils.readFileToString(template.getFile())));
+        }
+        rendered = new ArrayList<byte[]>();
+        for (final FilterValues values : filterValues) {
+            for (final CompiledTemplate compiledTemplate : compiledTemplates) {
+                rendered.add(compiledTemplate.render(values.getValues()).getBytes(Charsets.UTF_8));
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkNoErrors() {
+        log.checkNoErrors();
+    }
+
+    @TearDown
+    public void tearDown() {
+        corpus.delete();
+    }
+
+    @Benchmark
+    public int directoryScan() throws Exception {
+        final DirectoryReader directoryReader = new DirectoryReader(log);
+        return directoryReader.readFiles(corpus.getFiltersDirectory().getAbsolutePath(), null).size()
+                + directoryReader.readFiles(corpus.getTemplatesDirectory().getAbsolutePath(), null).size();
+    }
+
+    @Benchmark
+    public FilterSet filterParse() throws Exception {
+        return FilterSet.load(new FilterLoader(parameters), filters);
+    }
+
+    @Benchmark
+    public List<FilterValues> valueExpansion() {
+        return expandAll();
+    }
+
+    @Benchmark
+    public int substitution() {
+        int length = 0;
+        for (final FilterValues values : filterValues) {
+            for (final CompiledTemplate compiledTemplate : compiledTemplates) {
+                length += compiledTemplate.render(values.getValues()).length();
+            }
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int substitutionWithMissingCheck() {
+        int length = 0;
+        for (final FilterValues values : filterValues) {
+            final Set<String> missingProperties = new HashSet<String>();
+            for (final CompiledTemplate compiledTemplate : compiledTemplates) {
+                length += compiledTemplate.render(values, missingProperties).length();
+            }
+            length += missingProperties.size();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int write() throws Exception {
+        final OutputWriter outputWriter = new OutputWriter(false);
+        int i = 0;
+        for (final byte[] content : rendered) {
+            outputWriter.write(new File(corpus.getOutputDirectory(), "write/" + (i % filterCount) + "/" + i), content, null, null);
+            i++;
+        }
+        return i;
+    }
+
+    @Benchmark
+    public void endToEnd() throws Exception {
+        new ConfigGeneratorImpl(log, getParametersBuilder().build()).processFiltersIntoTemplates();
+    }
+
+    private List<FilterValues> expandAll() {
+        final List<FilterValues> expanded = new ArrayList<FilterValues>(filterSet.size());
+        for (final FileInfo filter : filterSet.getFilters()) {
+            expanded.add(FilterValues.expand(filterSet.getValues(filter), dictionary, filterSet.getAllKeys(), PREFIX, SUFFIX));
+        }
+        return expanded;
+    }
+
+    private ConfigGeneratorParametersBuilder getParametersBuilder() {
+        return new ConfigGeneratorParametersBuilder(log)
+                .withEncoding(Charsets.UTF_8.name())
+                .withTemplatesBasePath(corpus.getTemplatesDirectory().getAbsolutePath())
+                .withFiltersBasePath(corpus.getFiltersDirectory().getAbsolutePath())
+                .withExternalFilterBasePaths(Lists.<String>newArrayList())
+                .withTemplatesToIgnore(Lists.<String>newArrayList())
+                .withFiltersToIgnore(Lists.<String>newArrayList())
+                .withOutputBasePath(new File(corpus.getOutputDirectory(), "generated").getAbsolutePath())
+                .isWithLogOutput(false)
+                .isWithFailOnMissingProperty(false);
+    }
+}
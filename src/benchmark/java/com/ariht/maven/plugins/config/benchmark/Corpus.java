@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.benchmark;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Generates filters and templates on disk with a known shape so that benchmarks run against
+ * comparable inputs. Every filter defines the same keys apart from one, so there are always
+ * some missing properties to find, and every tenth value refers to another key.
+ */
+public class Corpus {
+
+    private static final String LITERAL_LINE = "some.property=literal text\n";
+
+    private final File baseDirectory;
+    private final File filtersDirectory;
+    private final File templatesDirectory;
+    private final File outputDirectory;
+
+    public Corpus(final File baseDirectory,
+                  final int filterCount,
+                  final int keysPerFilter,
+                  final int templateCount,
+                  final int templateSize,
+                  final double placeholderDensity) throws IOException {
+        this.baseDirectory = baseDirectory;
+        this.filtersDirectory = new File(baseDirectory, "filters");
+        this.templatesDirectory = new File(baseDirectory, "templates");
+        this.outputDirectory = new File(baseDirectory, "output");
+        final Random random = new Random(42);
+        for (int f = 0; f < filterCount; f++) {
+            final StringBuilder filter = new StringBuilder();
+            for (int k = 0; k < keysPerFilter; k++) {
+                if (k == f % keysPerFilter) {
+                    continue;
+                }
+                filter.append("key.").append(k).append('=');
+                if (k > 0 && k % 10 == 0) {
+                    filter.append("${key.").append(k - 1).append("}/");
+                }
+                filter.append("value-").append(f).append('-').append(k).append('\n');
+            }
+            FileUtils.writeStringToFile(new File(filtersDirectory, "env-" + f + ".filter"), filter.toString());
+        }
+        for (int t = 0; t < templateCount; t++) {
+            final StringBuilder template = new StringBuilder(templateSize + LITERAL_LINE.length());
+            while (template.length() < templateSize) {
+                if (random.nextDouble() < placeholderDensity) {
+                    template.append("${key.").append(random.nextInt(keysPerFilter)).append('}');
+                } else {
+                    template.append(LITERAL_LINE);
+                }
+            }
+            FileUtils.writeStringToFile(new File(templatesDirectory, "dir-" + (t % 4) + "/template-" + t + ".properties"), template.toString());
+        }
+    }
+
+    public File getFiltersDirectory() {
+        return filtersDirectory;
+    }
+
+    public File getTemplatesDirectory() {
+        return templatesDirectory;
+    }
+
+    public File getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    public void delete() {
+        FileUtils.deleteQuietly(baseDirectory);
+    }
+}
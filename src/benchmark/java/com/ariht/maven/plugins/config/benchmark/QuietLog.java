@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.benchmark;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Discards everything so that logging does not distort measurements, other than the first
+ * error which is written once to System.err and thrown by {@link #checkNoErrors()}, so that a
+ * broken corpus fails the run rather than reporting timings.
+ */
+public class QuietLog implements Log {
+
+    private String firstError;
+    private Throwable firstErrorCause;
+
+    public boolean isDebugEnabled() {
+        return false;
+    }
+
+    public void debug(CharSequence content) {
+    }
+
+    public void debug(CharSequence content, Throwable error) {
+    }
+
+    public void debug(Throwable error) {
+    }
+
+    public boolean isInfoEnabled() {
+        return false;
+    }
+
+    public void info(CharSequence content) {
+    }
+
+    public void info(CharSequence content, Throwable error) {
+    }
+
+    public void info(Throwable error) {
+    }
+
+    public boolean isWarnEnabled() {
+        return false;
+    }
+
+    public void warn(CharSequence content) {
+    }
+
+    public void warn(CharSequence content, Throwable error) {
+    }
+
+    public void warn(Throwable error) {
+    }
+
+    public boolean isErrorEnabled() {
+        return true;
+    }
+
+    public void error(CharSequence content) {
+        recordError(content, null);
+    }
+
+    public void error(CharSequence content, Throwable error) {
+        recordError(content, error);
+    }
+
+    public void error(Throwable error) {
+        recordError(String.valueOf(error), error);
+    }
+
+    /**
+     * @throws IllegalStateException the first error logged, if any
+     */
+    public synchronized void checkNoErrors() {
+        if (firstError != null) {
+            throw new IllegalStateException(firstError, firstErrorCause);
+        }
+    }
+
+    private synchronized void recordError(final CharSequence content, final Throwable error) {
+        if (firstError == null) {
+            firstError = String.valueOf(content);
+            firstErrorCause = error;
+            System.err.println(firstError + (error == null ? "" : ": " + error));
+        }
+    }
+}
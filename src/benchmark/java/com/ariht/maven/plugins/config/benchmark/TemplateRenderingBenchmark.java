@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.benchmark;
+
+import com.ariht.maven.plugins.config.generator.CompiledTemplate;
+import com.ariht.maven.plugins.config.generator.TemplateCompiler;
+import org.apache.commons.lang.text.StrSubstitutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders one template against a number of filters, comparing a StrSubstitutor per filter
+ * (the original approach) with a template compiled once and rendered per filter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TemplateRenderingBenchmark {
+
+    @Param({"20"})
+    public int filterCount;
+
+    @Param({"200"})
+    public int keysPerFilter;
+
+    @Param({"4096", "65536"})
+    public int templateSize;
+
+    @Param({"0.05"})
+    public double placeholderDensity;
+
+    private String template;
+    private List<Map<String, String>> filters;
+    private CompiledTemplate compiledTemplate;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        filters = new ArrayList<Map<String, String>>(filterCount);
+        for (int f = 0; f < filterCount; f++) {
+            final Map<String, String> values = new HashMap<String, String>();
+            for (int k = 0; k < keysPerFilter; k++) {
+                values.put("key." + k, "value-" + f + "-" + k);
+            }
+            filters.add(values);
+        }
+        final StringBuilder sb = new StringBuilder(templateSize);
+        while (sb.length() < templateSize) {
+            if (random.nextDouble() < placeholderDensity) {
+                sb.append("${key.").append(random.nextInt(keysPerFilter)).append('}');
+            } else {
+                sb.append("some.property=literal text\n");
+            }
+        }
+        template = sb.toString();
+        compiledTemplate = new TemplateCompiler("${", "}").compile(template);
+    }
+
+    @Benchmark
+    public int strSubstitutorPerFilter() {
+        int length = 0;
+        for (final Map<String, String> values : filters) {
+            length += new StrSubstitutor(values, "${", "}").replace(template).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int compiledTemplatePerFilter() {
+        int length = 0;
+        for (final Map<String, String> values : filters) {
+            length += compiledTemplate.render(values).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int compileOnceAndRenderPerFilter() {
+        final CompiledTemplate compiled = new TemplateCompiler("${", "}").compile(template);
+        int length = 0;
+        for (final Map<String, String> values : filters) {
+            length += compiled.render(values).length();
+        }
+        return length;
+    }
+}
@@ -17,18 +17,28 @@
 package com.ariht.maven.plugins.config;
 
 import com.ariht.maven.plugins.config.generator.ConfigGeneratorImpl;
+import com.ariht.maven.plugins.config.generator.ReactorCache;
 import com.ariht.maven.plugins.config.parameters.ConfigGeneratorParameters;
 import com.ariht.maven.plugins.config.parameters.ConfigGeneratorParametersBuilder;
 import com.google.common.base.Preconditions;
+import org.apache.commons.lang.StringUtils;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
 
+import java.io.File;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Generates config and scripts for multiple target environments using
@@ -53,14 +63,65 @@ public class ConfigGenerationMojo extends AbstractMojo {
     protected List<String> templatesToIgnore;
     @Parameter
     protected List<String> filtersToIgnore;
+    @Parameter (property = "config.templates")
+    protected List<String> includeTemplates;
+    @Parameter (property = "config.filters")
+    protected List<String> includeFilters;
     @Parameter (defaultValue = "filter.source")
     protected String filterSourcePropertyName;
+    @Parameter (defaultValue = "commons-configuration")
+    protected String propertiesLoader;
+    @Parameter (defaultValue = "filter.parents")
+    protected String filterParentsPropertyName;
+    @Parameter
+    protected String filterLayerFilename;
     @Parameter (defaultValue = "${")
     protected String propertyPrefix;
     @Parameter (defaultValue = "}")
     protected String propertySuffix;
     @Parameter (defaultValue = "true")
     protected boolean failOnMissingProperty;
+    @Parameter (defaultValue = "67108864")
+    protected long maxTemplateCacheSize;
+    @Parameter (defaultValue = "16777216")
+    protected long streamingTemplateSize;
+    @Parameter (defaultValue = "67108864")
+    protected long maxSharedRenderSize;
+    @Parameter (defaultValue = "1")
+    protected String threads;
+    @Parameter (defaultValue = "64")
+    protected int writeQueueSize;
+    @Parameter (defaultValue = "false")
+    protected boolean incremental;
+    @Parameter
+    protected String manifestFile;
+    @Parameter (defaultValue = "false")
+    protected boolean skipUnchangedFiles;
+    @Parameter
+    protected String metricsFile;
+    @Parameter (defaultValue = "10")
+    protected int slowestOutputs;
+    @Parameter
+    protected String archiveFormat;
+    @Parameter (defaultValue = "false")
+    protected boolean attachArchives;
+    @Parameter
+    protected String archiveClassifierPrefix;
+    @Parameter (defaultValue = "true")
+    protected boolean reactorCache;
+    @Parameter
+    protected String filterCacheFile;
+
+    @Parameter (defaultValue = "${project}", readonly = true)
+    protected MavenProject project;
+    @Parameter (defaultValue = "${session}", readonly = true)
+    protected MavenSession session;
+    @Component
+    protected MavenProjectHelper projectHelper;
+
+    // One cache per build, shared by every module and execution, released along with the build's request.
+    // Keyed by the request as each module is given its own copy of the session.
+    private static final Map<MavenExecutionRequest, ReactorCache> REACTOR_CACHES = new WeakHashMap<MavenExecutionRequest, ReactorCache>();
 
 
     /**
@@ -70,30 +131,86 @@ public class ConfigGenerationMojo extends AbstractMojo {
         final Log log = getLog();
         Preconditions.checkNotNull(log);
 
-        final ConfigGeneratorParameters parameters = new ConfigGeneratorParametersBuilder(log)
-                                                                    .withEncoding(encoding)
-                                                                    .withTemplatesBasePath(templatesBasePath)
-                                                                    .withFiltersBasePath(filtersBasePath)
-                                                                    .withExternalFilterBasePaths(externalFilterBasePaths)
-                                                                    .withOutputBasePath(outputBasePath)
-                                                                    .isWithLogOutput(logOutput)
-                                                                    .withTemplatesToIgnore(templatesToIgnore)
-                                                                    .withFiltersToIgnore(filtersToIgnore)
-                                                                    .withFilterSourcePropertyName(filterSourcePropertyName)
-                                                                    .withPropertyPrefix(propertyPrefix)
-                                                                    .withPropertySuffix(propertySuffix)
-                                                                    .isWithFailOnMissingProperty(failOnMissingProperty)
-                                                                    .build();
+        final ConfigGeneratorParameters parameters = getParametersBuilder(log).build();
         if (log.isDebugEnabled()) {
             log.debug("configGeneratorParameters: [" + parameters.toString() + "]");
         }
 
-        final ConfigGeneratorImpl configGenerator = new ConfigGeneratorImpl(log, parameters);
-        if (log.isDebugEnabled()) {
+        final ConfigGeneratorImpl configGenerator = new ConfigGeneratorImpl(log, parameters, getReactorCache(parameters));
+        configGenerator.processFiltersIntoTemplates();
+        if (parameters.isAttachArchives()) {
+            attachArchives(log, parameters, configGenerator.getArchives());
+        }
+    }
 
+    /**
+     * Cache shared by every generation in this build, none if disabled or run outside of a build.
+     */
+    protected ReactorCache getReactorCache(final ConfigGeneratorParameters parameters) {
+        if (!parameters.isReactorCache() || session == null || session.getRequest() == null) {
+            return null;
         }
-        configGenerator.processFiltersIntoTemplates();
+        synchronized (REACTOR_CACHES) {
+            ReactorCache cache = REACTOR_CACHES.get(session.getRequest());
+            if (cache == null) {
+                cache = new ReactorCache(parameters.getMaxTemplateCacheSize());
+                REACTOR_CACHES.put(session.getRequest(), cache);
+            } else {
+                // Modules may configure different sizes, the largest applies to the whole build
+                cache.ensureMaxSize(parameters.getMaxTemplateCacheSize());
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Attach each filter's archive so that it is installed and deployed alongside the project.
+     */
+    private void attachArchives(final Log log, final ConfigGeneratorParameters parameters, final Map<String, File> archivesByClassifier) {
+        if (StringUtils.isBlank(parameters.getArchiveFormat())) {
+            log.warn("No archives to attach, archiveFormat has not been set");
+            return;
+        }
+        for (final Map.Entry<String, File> entry : archivesByClassifier.entrySet()) {
+            log.debug("Attaching : " + entry.getValue() + " with classifier " + entry.getKey());
+            projectHelper.attachArtifact(project, parameters.getArchiveFormat(), entry.getKey(), entry.getValue());
+        }
+    }
 
+    protected ConfigGeneratorParametersBuilder getParametersBuilder(final Log log) {
+        return new ConfigGeneratorParametersBuilder(log)
+                .withEncoding(encoding)
+                .withTemplatesBasePath(templatesBasePath)
+                .withFiltersBasePath(filtersBasePath)
+                .withExternalFilterBasePaths(externalFilterBasePaths)
+                .withOutputBasePath(outputBasePath)
+                .isWithLogOutput(logOutput)
+                .withTemplatesToIgnore(templatesToIgnore)
+                .withFiltersToIgnore(filtersToIgnore)
+                .withIncludeTemplates(includeTemplates)
+                .withIncludeFilters(includeFilters)
+                .withFilterSourcePropertyName(filterSourcePropertyName)
+                .withPropertiesLoader(propertiesLoader)
+                .withFilterParentsPropertyName(filterParentsPropertyName)
+                .withFilterLayerFilename(filterLayerFilename)
+                .withPropertyPrefix(propertyPrefix)
+                .withPropertySuffix(propertySuffix)
+                .isWithFailOnMissingProperty(failOnMissingProperty)
+                .withMaxTemplateCacheSize(maxTemplateCacheSize)
+                .withStreamingTemplateSize(streamingTemplateSize)
+                .withMaxSharedRenderSize(maxSharedRenderSize)
+                .withThreads(threads)
+                .withWriteQueueSize(writeQueueSize)
+                .isWithIncremental(incremental)
+                .withManifestFile(manifestFile)
+                .isWithSkipUnchangedFiles(skipUnchangedFiles)
+                .withMetricsFile(metricsFile)
+                .withSlowestOutputs(slowestOutputs)
+                .withArchiveFormat(archiveFormat)
+                .isWithAttachArchives(attachArchives)
+                .withArchiveClassifierPrefix(archiveClassifierPrefix)
+                .isWithReactorCache(reactorCache)
+                .withFilterCacheFile(filterCacheFile);
     }
 
 }
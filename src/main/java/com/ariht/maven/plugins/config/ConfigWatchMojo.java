@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config;
+
+import com.ariht.maven.plugins.config.generator.ConfigWatcher;
+import com.ariht.maven.plugins.config.parameters.ConfigGeneratorParameters;
+import com.google.common.base.Preconditions;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.IOException;
+
+/**
+ * Generates config as the generate goal does then keeps watching templates and filters,
+ * regenerating only the affected output whenever they change. Runs until interrupted (Ctrl+C)
+ * so is meant for local development rather than binding to the build lifecycle.
+ */
+@Mojo(name = "watch", requiresDirectInvocation = true)
+public class ConfigWatchMojo extends ConfigGenerationMojo {
+
+    @Parameter (defaultValue = "250")
+    protected long debounceMillis;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        final Log log = getLog();
+        Preconditions.checkNotNull(log);
+
+        final ConfigGeneratorParameters parameters = getParametersBuilder(log).isWithIncremental(true).build();
+        if (log.isDebugEnabled()) {
+            log.debug("configGeneratorParameters: [" + parameters.toString() + "]");
+        }
+
+        try {
+            final ConfigWatcher configWatcher = new ConfigWatcher(log, parameters, debounceMillis);
+            try {
+                configWatcher.run();
+            } finally {
+                configWatcher.close();
+            }
+        } catch (IOException e) {
+            log.error("Error watching for changes: " + String.valueOf(e.getMessage()));
+            throw new MojoFailureException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Template parsed into literal text interleaved with placeholder names, there is always
+ * one more literal than placeholder: literal[0] placeholder[0] literal[1] ... literal[n].
+ *
+ * Immutable so a single instance can be rendered against any number of filters. Placeholders
+ * are bound to their slots in the filters' key dictionary on first use, so rendering against
+ * filter values is only array lookups.
+ *
+ * As with StrSubstitutor, a value ending in the escape character escapes a placeholder that
+ * directly follows it. That depends on the values so is decided as each filter is rendered.
+ */
+public class CompiledTemplate {
+
+    private final String prefix;
+    private final String suffix;
+    private final char escape;
+    private final String[] literals;
+    private final String[] placeholders;
+    private final int literalLength;
+    // Slots of the placeholders in the dictionary last rendered with
+    private volatile Binding binding;
+
+    CompiledTemplate(final String prefix, final String suffix, final char escape, final String[] literals, final String[] placeholders) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.escape = escape;
+        this.literals = literals;
+        this.placeholders = placeholders;
+        int length = 0;
+        for (final String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    public int getPlaceholderCount() {
+        return placeholders.length;
+    }
+
+    public String getPlaceholder(final int index) {
+        return placeholders[index];
+    }
+
+    /**
+     * Concatenate literals with values for each placeholder. Values are expected to be fully
+     * expanded already, placeholders without a value are left in the output untouched.
+     */
+    public String render(final Map<String, String> values) {
+        if (placeholders.length == 0) {
+            return literals[0];
+        }
+        final StringBuilder sb = new StringBuilder(literalLength + (placeholders.length << 4));
+        appendTo(sb, values);
+        return sb.toString();
+    }
+
+    private void appendTo(final StringBuilder sb, final Map<String, String> values) {
+        for (int i = 0; i < placeholders.length; i++) {
+            sb.append(literals[i]);
+            if (isEscaped(sb, i)) {
+                unescape(sb, i).appendTo(sb, values);
+                continue;
+            }
+            final String value = values.get(placeholders[i]);
+            if (value == null) {
+                sb.append(prefix).append(placeholders[i]).append(suffix);
+            } else {
+                sb.append(value);
+            }
+        }
+        sb.append(literals[placeholders.length]);
+    }
+
+    /**
+     * Render against a filter's values, adding any properties that could not be resolved
+     * to missingProperties as they are met.
+     */
+    public String render(final FilterValues values, final Set<String> missingProperties) {
+        if (placeholders.length == 0) {
+            return literals[0];
+        }
+        final StringBuilder sb = new StringBuilder(literalLength + (placeholders.length << 4));
+        appendTo(sb, values, missingProperties);
+        return sb.toString();
+    }
+
+    private void appendTo(final StringBuilder sb, final FilterValues values, final Set<String> missingProperties) {
+        final int[] slots = getSlots(values.getDictionary());
+        for (int i = 0; i < placeholders.length; i++) {
+            sb.append(literals[i]);
+            if (isEscaped(sb, i)) {
+                unescape(sb, i).appendTo(sb, values, missingProperties);
+                continue;
+            }
+            final String value = values.resolve(slots[i], placeholders[i], missingProperties);
+            if (value == null) {
+                sb.append(prefix).append(placeholders[i]).append(suffix);
+            } else {
+                sb.append(value);
+            }
+        }
+        sb.append(literals[placeholders.length]);
+    }
+
+    /**
+     * Escapes in literal text are dealt with when compiled, this catches the escape character
+     * ending whatever was rendered for the previous placeholder.
+     */
+    private boolean isEscaped(final StringBuilder sb, final int index) {
+        return literals[index].length() == 0 && sb.length() > 0 && sb.charAt(sb.length() - 1) == escape;
+    }
+
+    /**
+     * Drop the escape and keep the prefix as text, the rest of the placeholder compiled again
+     * as StrSubstitutor resumes scanning after the first character of the prefix.
+     */
+    private CompiledTemplate unescape(final StringBuilder sb, final int index) {
+        sb.setCharAt(sb.length() - 1, prefix.charAt(0));
+        return new TemplateCompiler(prefix, suffix, escape).compile(prefix.substring(1) + placeholders[index] + suffix);
+    }
+
+    /**
+     * Everything rendering against the values depends on: the value of each placeholder and
+     * the properties it is missing. Values with equal projections render the same output,
+     * placeholders without a value rendering the same way for every filter.
+     */
+    public Object project(final FilterValues values) {
+        final int[] slots = getSlots(values.getDictionary());
+        final Object[] projection = new Object[slots.length << 1];
+        for (int i = 0; i < slots.length; i++) {
+            projection[i << 1] = values.getValue(slots[i]);
+            projection[(i << 1) + 1] = values.getMissingProperties(slots[i]);
+        }
+        return Arrays.asList(projection);
+    }
+
+    /**
+     * Bound again whenever the dictionary differs or has had keys added since, which only
+     * happens between generations or when shared by modules.
+     */
+    private int[] getSlots(final KeyDictionary dictionary) {
+        Binding current = binding;
+        if (current == null || current.dictionary != dictionary || current.dictionarySize != dictionary.size()) {
+            current = new Binding(dictionary, dictionary.size(), dictionary.getSlots(placeholders));
+            binding = current;
+        }
+        return current.slots;
+    }
+
+    private static class Binding {
+        private final KeyDictionary dictionary;
+        private final int dictionarySize;
+        private final int[] slots;
+
+        private Binding(final KeyDictionary dictionary, final int dictionarySize, final int[] slots) {
+            this.dictionary = dictionary;
+            this.dictionarySize = dictionarySize;
+            this.slots = slots;
+        }
+    }
+}
@@ -16,36 +16,62 @@
 
 package com.ariht.maven.plugins.config.generator;
 
+import com.ariht.maven.plugins.config.generator.GenerationMetrics.Phase;
+import com.ariht.maven.plugins.config.io.AsyncOutputWriter;
+import com.ariht.maven.plugins.config.io.BinaryFiles;
+import com.ariht.maven.plugins.config.io.BuildManifest;
+import com.ariht.maven.plugins.config.io.Digests;
 import com.ariht.maven.plugins.config.io.FileInfo;
+import com.ariht.maven.plugins.config.io.FilterCache;
 import com.ariht.maven.plugins.config.io.DirectoryDeleter;
 import com.ariht.maven.plugins.config.io.DirectoryReader;
+import com.ariht.maven.plugins.config.io.OutputWriter;
 import com.ariht.maven.plugins.config.parameters.ConfigGeneratorParameters;
+import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
-import org.apache.commons.configuration.CompositeConfiguration;
-import org.apache.commons.configuration.ConfigurationConverter;
-import org.apache.commons.configuration.ConfigurationException;
-import org.apache.commons.configuration.PropertiesConfiguration;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang.text.StrSubstitutor;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 public class ConfigGeneratorImpl {
 
@@ -53,68 +79,254 @@ public class ConfigGeneratorImpl {
 
     private final ConfigGeneratorParameters configGeneratorParameters;
 
+    private final OutputWriter outputWriter;
+
+    // Shared with other generations in the same build, may be null
+    private final ReactorCache reactorCache;
+
+    // Kept between runs so regenerating repeatedly only re-reads templates and filters that changed
+    private TemplateCache templateCache;
+    private FilterSet filterSet;
+    private FilterLayers filterLayers;
+    // Archives written by the last run by classifier, in filter order
+    private final Map<String, File> archives = new LinkedHashMap<String, File>();
+
     public ConfigGeneratorImpl(final Log log, final ConfigGeneratorParameters configGeneratorParameters) {
+        this(log, configGeneratorParameters, null);
+    }
+
+    /**
+     * @param reactorCache filters and templates already parsed by other generations in the build, may be null
+     */
+    public ConfigGeneratorImpl(final Log log, final ConfigGeneratorParameters configGeneratorParameters, final ReactorCache reactorCache) {
         Preconditions.checkNotNull(log);
         Preconditions.checkNotNull(configGeneratorParameters);
         this.log = log;
         this.configGeneratorParameters = configGeneratorParameters;
+        this.reactorCache = reactorCache;
+        this.outputWriter = new OutputWriter(configGeneratorParameters.isSkipUnchangedFiles());
+        Preconditions.checkArgument(!isArchived() || !configGeneratorParameters.isIncremental(),
+                "Archived output is always generated in full, it cannot be generated incrementally");
     }
 
 
     private static final String PATH_SEPARATOR = "/";
+    private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
 
-    private static final String MISSING_PROPERTY_PREFIX = "<<<<<<< ";
-    private static final String MISSING_PROPERTY_SUFFIX = " >>>>>>>";
-
-    private static final String MISSING_PROPERTY_PATTERN = "(?<=" + MISSING_PROPERTY_PREFIX + ").*?(?=" + MISSING_PROPERTY_SUFFIX + ")";
-    private static final Pattern missingPropertyPattern = Pattern.compile(MISSING_PROPERTY_PATTERN);
+    /**
+     * Archives written by the last generation, by the classifier to attach them with.
+     */
+    public Map<String, File> getArchives() {
+        return Collections.unmodifiableMap(archives);
+    }
 
     /**
      * Clear target io and create new scripts and config io.
      */
     public void processFiltersIntoTemplates() throws MojoExecutionException, MojoFailureException {
         logConfigurationParameters();
-        new DirectoryDeleter().clearTargetDirectory(configGeneratorParameters.getOutputBasePath(), log);
+        final GenerationMetrics metrics = new GenerationMetrics(configGeneratorParameters.getSlowestOutputs());
+        final long start = System.nanoTime();
+        final BuildManifest manifest = prepareOutputDirectory();
+        metrics.addPhase(Phase.PREPARE, System.nanoTime() - start);
         try {
-            processTemplatesAndGenerateConfig();
+            processTemplatesAndGenerateConfig(manifest, metrics);
         } catch (Exception e) {
             log.error("Error generating config: " + String.valueOf(e.getMessage()));
             throw new MojoFailureException(e.getMessage(), e);
         }
     }
 
+    /**
+     * Incremental builds keep the output from the previous build when there is a usable manifest,
+     * otherwise the target io is cleared ready for full generation - unless unchanged files are
+     * being skipped in which case stale files are removed once generation completes.
+     */
+    private BuildManifest prepareOutputDirectory() throws MojoFailureException {
+        final File manifestFile = getManifestFile();
+        if (!configGeneratorParameters.isIncremental()) {
+            FileUtils.deleteQuietly(manifestFile);
+            if (!outputWriter.isSkipUnchanged()) {
+                new DirectoryDeleter().clearTargetDirectory(configGeneratorParameters.getOutputBasePath(), log);
+            }
+            return null;
+        }
+        try {
+            final BuildManifest manifest = BuildManifest.read(manifestFile, getParametersDigest(), log);
+            if (!manifest.isPreviousBuildFound() && !outputWriter.isSkipUnchanged()) {
+                new DirectoryDeleter().clearTargetDirectory(configGeneratorParameters.getOutputBasePath(), log);
+            }
+            return manifest;
+        } catch (IOException e) {
+            log.error("Error reading build manifest: " + String.valueOf(e.getMessage()));
+            throw new MojoFailureException(e.getMessage(), e);
+        }
+    }
+
     /**
      * Merge templates with filters to generate config, scripts and property io.
      */
-    private void processTemplatesAndGenerateConfig() throws Exception {
+    private void processTemplatesAndGenerateConfig(final BuildManifest manifest, final GenerationMetrics metrics) throws Exception {
+        long start = System.nanoTime();
         final DirectoryReader directoryReader = new DirectoryReader(log);
-        final List<FileInfo> filters = directoryReader.readFiles(configGeneratorParameters.getFiltersBasePath(), configGeneratorParameters.getFiltersToIgnore());
-        for (FileInfo fileInfo : filters) {
+        final FilterCache filterCache = readFilterCache();
+        final FilterLoader filterLoader = new FilterLoader(configGeneratorParameters, reactorCache, filterCache);
+        if (filterLayers == null) {
+            filterLayers = new FilterLayers(filterLoader, configGeneratorParameters);
+        }
+        final List<FileInfo> filters = new ArrayList<FileInfo>();
+        for (final FileInfo fileInfo : directoryReader.readFiles(configGeneratorParameters.getFiltersBasePath(),
+                configGeneratorParameters.getFiltersToIgnore(), configGeneratorParameters.getIncludeFilters())) {
+            if (filterLayers.isLayer(fileInfo)) {
+                log.debug("Filter layer, not a filter : " + fileInfo.getFile());
+                continue;
+            }
             fileInfo.lookForExternalFiles(configGeneratorParameters.getExternalFilterBasePaths());
+            filters.add(fileInfo);
         }
-        final List<FileInfo> templates = directoryReader.readFiles(configGeneratorParameters.getTemplatesBasePath(), configGeneratorParameters.getTemplatesToIgnore());
+        final List<FileInfo> templates = directoryReader.readFiles(configGeneratorParameters.getTemplatesBasePath(),
+                configGeneratorParameters.getTemplatesToIgnore(), configGeneratorParameters.getIncludeTemplates());
+        metrics.addPhase(Phase.SCAN, System.nanoTime() - start);
         logOutputPath();
+        for (final FileInfo template : templates) {
+            metrics.addTemplate(template.getFile().getAbsolutePath(), template.getFile().length());
+        }
+
+        // Each template is read and parsed once then rendered against every filter
+        final TemplateCompiler templateCompiler = new TemplateCompiler(configGeneratorParameters.getPropertyPrefix(), configGeneratorParameters.getPropertySuffix());
+        if (templateCache == null) {
+            templateCache = new TemplateCache(log, templateCompiler, configGeneratorParameters.getMaxTemplateCacheSize(),
+                    configGeneratorParameters.getEncoding(), reactorCache);
+        }
+        final TemplateCache templateCache = this.templateCache;
+        start = System.nanoTime();
+        if (manifest == null || !manifest.isPreviousBuildFound()) {
+            // Incremental builds only read templates that need rendering, large templates are never held in memory
+            final List<FileInfo> templatesToCache = new ArrayList<FileInfo>(templates.size());
+            for (final FileInfo template : templates) {
+                if (!isStreamed(template)) {
+                    templatesToCache.add(template);
+                }
+            }
+            templateCache.load(templatesToCache);
+        }
+        metrics.addPhase(Phase.TEMPLATE_LOAD, System.nanoTime() - start);
+        final StreamingTemplateRenderer streamingRenderer = new StreamingTemplateRenderer(templateCompiler);
 
-        // Get list of all properties in all filter io.
-        final Set<String> allProperties = getAllProperties(filters);
+        // Each filter io parsed once, also gives list of all properties in all filter io.
+        start = System.nanoTime();
+        final FilterSet filterSet = FilterSet.load(filterLoader, filterLayers, filters, this.filterSet);
+        this.filterSet = filterSet;
+        if (filterCache != null) {
+            writeFilterCache(filterCache, filterSet);
+        }
+        metrics.addPhase(Phase.FILTER_PARSE, System.nanoTime() - start);
+        if (reactorCache != null) {
+            log.debug("Reactor cache : " + reactorCache.getHits() + " hits, " + reactorCache.getMisses() + " misses, "
+                    + reactorCache.getSize() + " bytes retained");
+        }
+        for (final FileInfo filter : filters) {
+            long bytesRead = 0;
+            for (final File file : filter.getFiles()) {
+                bytesRead += file.length();
+            }
+            metrics.addFilter(filter.getFile().getAbsolutePath(), bytesRead);
+        }
+        // Every output directory is worked out and created once rather than for each template and filter
+        final OutputDirectories outputDirectories = isArchived() ? null
+                : new OutputDirectories(configGeneratorParameters.getOutputBasePath(), filterSet.getFilters(), templates);
+        if (outputDirectories != null) {
+            start = System.nanoTime();
+            final int created = outputDirectories.create(log);
+            log.debug("Output directories : " + outputDirectories.getDirectories().size() + " planned, " + created + " created");
+            metrics.addPhase(Phase.PREPARE, System.nanoTime() - start);
+        }
         // Collection stores missing properties by file so this can be logged once at the end.
         final Map<String, Set<String>> missingPropertiesByFilename = new LinkedHashMap<String, Set<String>>();
 
-        for (final FileInfo filter : filters) {
-            final Properties properties = readFilterIntoProperties(filter);
-            final LinkedHashMap<String, String> valueMap = Maps.newLinkedHashMap(Maps.fromProperties(properties));
-
-            // No point checking for missing properties if all were found in the filter file
-            boolean missingPropertyFound = false;
-            for (String missingProperty : Sets.difference(allProperties, valueMap.keySet()).immutableCopy()) {
-                valueMap.put(missingProperty, MISSING_PROPERTY_PREFIX + missingProperty + MISSING_PROPERTY_SUFFIX);
-                missingPropertyFound = true;
+        // Filters are generated concurrently, results (and their log output) are collected in filter order
+        final int threads = Math.min(configGeneratorParameters.getThreads(), Math.max(1, filterSet.size()));
+        final ExecutorService executor = createExecutor(threads);
+        metrics.setThreads(threads);
+        // Rendered output is handed to a single writer thread through a bounded queue so rendering is not held up by writes
+        final AsyncOutputWriter asyncWriter = isArchived() || configGeneratorParameters.getWriteQueueSize() == 0 ? null
+                : new AsyncOutputWriter(log, outputWriter, configGeneratorParameters.getWriteQueueSize());
+        // Filters with the same values for a template's placeholders share its rendered output
+        final SharedRenders sharedRenders = configGeneratorParameters.getMaxSharedRenderSize() == 0 ? null
+                : new SharedRenders(configGeneratorParameters.getMaxSharedRenderSize());
+        int missingPropertyCount = 0;
+        start = System.nanoTime();
+        try {
+            final List<Future<FilterResult>> futures = new ArrayList<Future<FilterResult>>(filterSet.size());
+            for (final FileInfo filter : filterSet.getFilters()) {
+                futures.add(executor.submit(new Callable<FilterResult>() {
+                    public FilterResult call() throws Exception {
+                        return isArchived()
+                                ? generateArchiveForFilter(filter, filterSet, templates, templateCache, sharedRenders, streamingRenderer)
+                                : generateConfigForFilter(filter, filterSet, templates, templateCache, sharedRenders, streamingRenderer,
+                                        outputDirectories, asyncWriter, manifest);
+                    }
+                }));
             }
-            final StrSubstitutor strSubstitutor = new StrSubstitutor(valueMap, configGeneratorParameters.getPropertyPrefix(), configGeneratorParameters.getPropertySuffix());
-            for (final FileInfo template : templates) {
-                generateConfig(template, filter, configGeneratorParameters.getOutputBasePath(), strSubstitutor, missingPropertiesByFilename, missingPropertyFound);
+            int written = 0;
+            int identical = 0;
+            int upToDate = 0;
+            final Set<String> outputFilenames = new HashSet<String>();
+            archives.clear();
+            for (final Future<FilterResult> future : futures) {
+                final FilterResult filterResult = getResult(future);
+                filterResult.log.replay();
+                if (!filterResult.missingProperties.isEmpty()) {
+                    missingPropertiesByFilename.put(filterResult.filename, filterResult.missingProperties);
+                    missingPropertyCount += filterResult.missingProperties.size();
+                }
+                metrics.addPhase(Phase.EXPAND, filterResult.expandNanos);
+                metrics.addPhase(Phase.RENDER, filterResult.renderNanos);
+                metrics.addPhase(Phase.WRITE, filterResult.writeNanos);
+                for (final OutputTiming outputTiming : filterResult.outputTimings) {
+                    metrics.addOutput(outputTiming.outputFilename, filterResult.filename, outputTiming.templatePath, outputTiming.nanos, outputTiming.bytesWritten);
+                }
+                written += filterResult.written;
+                identical += filterResult.identical;
+                upToDate += filterResult.upToDate;
+                outputFilenames.addAll(filterResult.outputFilenames);
+                if (filterResult.archive != null) {
+                    archives.put(filterResult.archiveClassifier, filterResult.archive);
+                }
+            }
+            if (asyncWriter != null) {
+                asyncWriter.finish();
+                metrics.addPhase(Phase.WRITE, asyncWriter.getWriteNanos());
+                written += asyncWriter.getWritten();
+                identical += asyncWriter.getUnchanged();
+            }
+            metrics.addPhase(Phase.GENERATE, System.nanoTime() - start);
+            if (sharedRenders != null) {
+                log.debug("Shared renders : " + sharedRenders.getHits() + " reused, " + sharedRenders.getMisses() + " rendered, "
+                        + sharedRenders.getSize() + " bytes retained");
+            }
+            start = System.nanoTime();
+            int removed = 0;
+            if (manifest != null && manifest.isPreviousBuildFound()) {
+                removed = removeOutputs(manifest.getRemovedOutputs());
+            } else if (outputWriter.isSkipUnchanged()) {
+                removed = new DirectoryDeleter().deleteFilesNotGenerated(configGeneratorParameters.getOutputBasePath(), outputFilenames, log);
+            }
+            logPlaceholderIndex(templates, manifest);
+            if (manifest != null) {
+                manifest.write();
+            }
+            metrics.addPhase(Phase.REMOVE, System.nanoTime() - start);
+            log.info("Config generation: " + written + " written, " + identical + " unchanged (not rewritten), "
+                    + upToDate + " up to date (not generated), " + removed + " removed");
+            metrics.setCounts(written, identical, upToDate, removed, missingPropertyCount);
+        } finally {
+            executor.shutdownNow();
+            if (asyncWriter != null) {
+                asyncWriter.abort();
             }
         }
+        writeMetrics(metrics);
 
         if (!missingPropertiesByFilename.keySet().isEmpty()) {
             final StringBuilder sb = new StringBuilder("Missing properties identified:\n");
@@ -129,128 +341,510 @@ public class ConfigGeneratorImpl {
         }
     }
 
+    /**
+     * Apply a single filter to every template, logging to a deferred log so that output
+     * can be written in filter order regardless of which thread did the work.
+     */
+    private FilterResult generateConfigForFilter(final FileInfo filter,
+                                                 final FilterSet filterSet,
+                                                 final List<FileInfo> templates,
+                                                 final TemplateCache templateCache,
+                                                 final SharedRenders sharedRenders,
+                                                 final StreamingTemplateRenderer streamingRenderer,
+                                                 final OutputDirectories outputDirectories,
+                                                 final AsyncOutputWriter asyncWriter,
+                                                 final BuildManifest manifest) throws IOException {
+        final FilterResult filterResult = new FilterResult(filter.getFile().getAbsolutePath(), new DeferredLog(log));
+        final FilterValues filterValues = expand(filter, filterSet, filterResult);
+        final String filterDigest = manifest == null ? null : getFilterDigest(filterValues, filterSet);
+        for (final FileInfo template : templates) {
+            generateConfig(template, templateCache, sharedRenders, streamingRenderer, filter, outputDirectories, asyncWriter,
+                    filterValues, filterResult, manifest, filterDigest);
+        }
+        return filterResult;
+    }
+
+    /**
+     * Apply a single filter to every template writing the results into a single archive rather
+     * than separate files, entries laid out as they would be below the filter's output directory.
+     * Written to a temporary file first so that a failure never leaves a partial archive.
+     */
+    private FilterResult generateArchiveForFilter(final FileInfo filter,
+                                                  final FilterSet filterSet,
+                                                  final List<FileInfo> templates,
+                                                  final TemplateCache templateCache,
+                                                  final SharedRenders sharedRenders,
+                                                  final StreamingTemplateRenderer streamingRenderer) throws IOException {
+        final FilterResult filterResult = new FilterResult(filter.getFile().getAbsolutePath(), new DeferredLog(log));
+        final FilterValues filterValues = expand(filter, filterSet, filterResult);
+        final String filterPath = getFilterOutputPath(filter);
+        final File archive = new File(configGeneratorParameters.getOutputBasePath(), filterPath + "." + configGeneratorParameters.getArchiveFormat());
+        FileUtils.forceMkdir(archive.getParentFile());
+        final File temporaryFile = new File(archive.getPath() + TEMPORARY_FILE_EXTENSION);
+        try {
+            final ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+            try {
+                for (final FileInfo template : templates) {
+                    addArchiveEntry(template, templateCache, sharedRenders, streamingRenderer, archive, zip, filterValues, filterResult);
+                }
+                zip.close();
+            } finally {
+                IOUtils.closeQuietly(zip);
+            }
+            Files.move(temporaryFile.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            FileUtils.deleteQuietly(temporaryFile);
+        }
+        filterResult.outputFilenames.add(FilenameUtils.separatorsToUnix(FilenameUtils.normalize(archive.getPath())));
+        filterResult.archive = archive;
+        filterResult.archiveClassifier = StringUtils.isBlank(configGeneratorParameters.getArchiveClassifierPrefix())
+                ? filterPath.replace('/', '-')
+                : configGeneratorParameters.getArchiveClassifierPrefix() + "-" + filterPath.replace('/', '-');
+        return filterResult;
+    }
+
+    /**
+     * Render a template straight into the next archive entry, named by its path below the templates directory.
+     */
+    private void addArchiveEntry(final FileInfo template,
+                                 final TemplateCache templateCache,
+                                 final SharedRenders sharedRenders,
+                                 final StreamingTemplateRenderer streamingRenderer,
+                                 final File archive,
+                                 final ZipOutputStream zip,
+                                 final FilterValues filterValues,
+                                 final FilterResult filterResult) throws IOException {
+        final String entryName = StringUtils.removeStart(FilenameUtils.separatorsToUnix(
+                FilenameUtils.normalize(template.getRelativeSubDirectory() + PATH_SEPARATOR + template.getName())), PATH_SEPARATOR);
+        final String outputFilename = FilenameUtils.separatorsToUnix(FilenameUtils.normalize(archive.getPath())) + "!/" + entryName;
+        if (configGeneratorParameters.isLogOutput()) {
+            filterResult.log.info("Creating : " + StringUtils.replace(outputFilename, configGeneratorParameters.getOutputBasePath(), ""));
+        } else if (filterResult.log.isDebugEnabled()) {
+            filterResult.log.debug("Creating : " + outputFilename);
+        }
+
+        final long start = System.nanoTime();
+        final Set<String> missingProperties = new LinkedHashSet<String>();
+        final ZipEntry entry = new ZipEntry(entryName);
+        entry.setTime(template.getFile().lastModified());
+        zip.putNextEntry(entry);
+        long writeStart = start;
+        if (isPassThrough(template, templateCache)) {
+            FileUtils.copyFile(template.getFile(), zip);
+        } else if (isStreamed(template)) {
+            streamTemplate(template, zip, streamingRenderer, filterValues, missingProperties);
+            writeStart = System.nanoTime();
+        } else {
+            final SharedRenders.Rendered rendered = render(template, templateCache, sharedRenders, filterValues, false);
+            missingProperties.addAll(rendered.getMissingProperties());
+            writeStart = System.nanoTime();
+            zip.write(rendered.getContent());
+        }
+        zip.closeEntry();
+        addMissingProperties(missingProperties, filterResult);
+        final long end = System.nanoTime();
+        filterResult.renderNanos += writeStart - start;
+        filterResult.writeNanos += end - writeStart;
+        filterResult.outputTimings.add(new OutputTiming(outputFilename, template.getFile().getAbsolutePath(), end - start, entry.getSize()));
+        filterResult.written++;
+    }
+
+    /**
+     * Expand place-holders within the filter's values ready for rendering every template.
+     */
+    private FilterValues expand(final FileInfo filter, final FilterSet filterSet, final FilterResult filterResult) {
+        final long start = System.nanoTime();
+        final FilterValues filterValues;
+        try {
+            filterValues = FilterValues.expand(filterSet.getValues(filter), filterSet.getDictionary(), filterSet.getAllKeys(),
+                    configGeneratorParameters.getPropertyPrefix(), configGeneratorParameters.getPropertySuffix());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(e.getMessage() + " in " + filter.getFile().getAbsolutePath(), e);
+        }
+        filterResult.expandNanos = System.nanoTime() - start;
+        return filterValues;
+    }
+
     /**
      * Read properties from filter file and substitute template place-holders.
      *
      * Typical output is to .../filter-dir/filter-name-no-extension/template-dir/template.name
      */
     private void generateConfig(final FileInfo template,
+                                final TemplateCache templateCache,
+                                final SharedRenders sharedRenders,
+                                final StreamingTemplateRenderer streamingRenderer,
                                 final FileInfo filter,
-                                final String outputBasePath,
-                                final StrSubstitutor strSubstitutor,
-                                final Map<String, Set<String>> missingPropertiesByFilename,
-                                final boolean missingPropertyFound) throws IOException, ConfigurationException, MojoFailureException {
+                                final OutputDirectories outputDirectories,
+                                final AsyncOutputWriter asyncWriter,
+                                final FilterValues filterValues,
+                                final FilterResult filterResult,
+                                final BuildManifest manifest,
+                                final String filterDigest) throws IOException {
+        final Log log = filterResult.log;
+        final String outputFilename = outputDirectories.getOutputFilename(filter, template);
 
-        final String outputDirectory = createOutputDirectory(template, filter, outputBasePath);
-        final String templateFilename = template.getFile().getName();
-        final String outputFilename = FilenameUtils.separatorsToUnix(outputDirectory + templateFilename);
+        filterResult.outputFilenames.add(outputFilename);
+
+        final String templateDigest = manifest == null ? null : manifest.getTemplateDigest(template.getFile());
+        final String referencedValuesDigest = manifest == null ? null
+                : getReferencedValuesDigest(template, templateCache, manifest, filterValues, filterDigest, log);
+        if (manifest != null && manifest.isUpToDate(outputFilename, templateDigest, referencedValuesDigest)) {
+            log.debug("Up to date : " + outputFilename);
+            addMissingProperties(manifest.reuse(outputFilename), filterResult);
+            filterResult.upToDate++;
+            return;
+        }
 
         if (configGeneratorParameters.isLogOutput()) {
-            log.info("Creating : " + StringUtils.replace(outputFilename, outputBasePath, ""));
+            log.info("Creating : " + StringUtils.replace(outputFilename, configGeneratorParameters.getOutputBasePath(), ""));
         } else if (log.isDebugEnabled()) {
             log.debug("Creating : " + String.valueOf(outputFilename));
         }
-        log.debug("Applying filter : " + filter.toString() + " to template : " + template.toString());
+        if (log.isDebugEnabled()) {
+            log.debug("Applying filter : " + filter.toString() + " to template : " + template.toString());
+        }
 
-        final String rawTemplate = FileUtils.readFileToString(template.getFile());
-        final String processedTemplate = strSubstitutor.replace(rawTemplate);
+        final long start = System.nanoTime();
+        final File outputFile = new File(outputFilename);
+        final String recordedDigest = manifest == null ? null : manifest.getRecordedOutputDigest(outputFilename);
+        final Set<String> missingProperties = new LinkedHashSet<String>();
+        final String contentDigest;
+        // Left null when the write is queued, the writer thread counts it instead
+        Boolean written = null;
+        long bytesWritten = -1;
+        long writeStart = start;
+        if (isPassThrough(template, templateCache)) {
+            // Output would be identical to the template so there is nothing to render
+            log.debug("Copying : " + template.getFile());
+            contentDigest = templateDigest;
+            if (asyncWriter == null) {
+                written = outputWriter.copy(template.getFile(), outputFile, contentDigest, recordedDigest);
+            } else {
+                asyncWriter.copy(template.getFile(), outputFile, contentDigest, recordedDigest,
+                        recordOutput(manifest, outputFilename, templateDigest, referencedValuesDigest, missingProperties, contentDigest));
+                bytesWritten = template.getFile().length();
+            }
+        } else if (isStreamed(template)) {
+            // Rendered to a temporary file alongside the output so a failure never leaves partial config
+            final File temporaryFile = new File(outputFilename + TEMPORARY_FILE_EXTENSION);
+            final MessageDigest digest = manifest == null ? null : Digests.newDigest();
+            try {
+                final OutputStream out = new FileOutputStream(temporaryFile);
+                try {
+                    streamTemplate(template, digest == null ? out : new DigestOutputStream(out, digest), streamingRenderer, filterValues, missingProperties);
+                    out.close();
+                } finally {
+                    IOUtils.closeQuietly(out);
+                }
+                addMissingProperties(missingProperties, filterResult);
+                contentDigest = digest == null ? null : Digests.toHex(digest.digest());
+                writeStart = System.nanoTime();
+                written = outputWriter.commit(temporaryFile, outputFile, contentDigest, recordedDigest);
+            } finally {
+                FileUtils.deleteQuietly(temporaryFile);
+            }
+        } else {
+            final SharedRenders.Rendered rendered = render(template, templateCache, sharedRenders, filterValues, manifest != null);
+            missingProperties.addAll(rendered.getMissingProperties());
+            addMissingProperties(missingProperties, filterResult);
 
-        // No point in running regex against long strings if properties are all present
-        if (missingPropertyFound) {
-            checkForMissingProperties(filter.getFile().getAbsolutePath(), processedTemplate, missingPropertiesByFilename);
+            // Only write out the generated io if there were no errors or errors are specifically ignored
+            final byte[] content = rendered.getContent();
+            contentDigest = rendered.getContentDigest();
+            writeStart = System.nanoTime();
+            if (asyncWriter == null) {
+                written = outputWriter.write(outputFile, content, contentDigest, recordedDigest);
+            } else {
+                asyncWriter.write(outputFile, content, contentDigest, recordedDigest,
+                        recordOutput(manifest, outputFilename, templateDigest, referencedValuesDigest, missingProperties, contentDigest));
+                bytesWritten = content.length;
+            }
         }
-
-        // Only write out the generated io if there were no errors or errors are specifically ignored
-        if (StringUtils.isNotBlank(configGeneratorParameters.getEncoding())) {
-            FileUtils.writeStringToFile(new File(outputFilename), processedTemplate, configGeneratorParameters.getEncoding());
+        final long end = System.nanoTime();
+        filterResult.renderNanos += writeStart - start;
+        filterResult.writeNanos += end - writeStart;
+        filterResult.outputTimings.add(new OutputTiming(outputFilename, template.getFile().getAbsolutePath(), end - start,
+                bytesWritten < 0 ? outputFile.length() : bytesWritten));
+        if (written == null) {
+            log.debug("Queued for writing : " + outputFilename);
+        } else if (written) {
+            filterResult.written++;
         } else {
-            FileUtils.writeStringToFile(new File(outputFilename), processedTemplate);
+            log.debug("Unchanged, not rewritten : " + outputFilename);
+            filterResult.identical++;
+        }
+        if (manifest != null && written != null) {
+            manifest.record(outputFilename, templateDigest, referencedValuesDigest, missingProperties, contentDigest);
         }
     }
 
     /**
-     * Check if there are any properties that haven't been substituted and add to map for logging out later.
+     * Records a queued output in the manifest once it has been written, as the manifest notes
+     * the size and modification time of the file written. None without a manifest.
      */
-    private void checkForMissingProperties(final String filename,
-                                           final String processedTemplate,
-                                           final Map<String, Set<String>> missingPropertiesByFilename) throws MojoFailureException {
-        final Matcher matcher = missingPropertyPattern.matcher(processedTemplate);
-        final Set<String> missingProperties = new LinkedHashSet<String>();
-        while(matcher.find()) {
-            final String propertyName = matcher.group();
-            if (!StringUtils.isBlank(propertyName)) {
-                missingProperties.add(propertyName);
-            }
+    private Runnable recordOutput(final BuildManifest manifest,
+                                  final String outputFilename,
+                                  final String templateDigest,
+                                  final String referencedValuesDigest,
+                                  final Set<String> missingProperties,
+                                  final String contentDigest) {
+        if (manifest == null) {
+            return null;
         }
-        if (missingProperties.isEmpty()) {
-            return;
+        return new Runnable() {
+            public void run() {
+                manifest.record(outputFilename, templateDigest, referencedValuesDigest, missingProperties, contentDigest);
+            }
+        };
+    }
+
+    /**
+     * Render a template held in memory, reusing the output of any filter with the same values
+     * for the template's placeholders when shared.
+     *
+     * @param digest whether the content digest is needed for the build manifest
+     */
+    private SharedRenders.Rendered render(final FileInfo template,
+                                          final TemplateCache templateCache,
+                                          final SharedRenders sharedRenders,
+                                          final FilterValues filterValues,
+                                          final boolean digest) throws IOException {
+        final CompiledTemplate compiledTemplate = templateCache.get(template);
+        final SharedRenders.Renderer renderer = new SharedRenders.Renderer() {
+            public SharedRenders.Rendered render() throws IOException {
+                final Set<String> missingProperties = new LinkedHashSet<String>();
+                final byte[] content = encode(compiledTemplate.render(filterValues, missingProperties));
+                return new SharedRenders.Rendered(content, missingProperties, digest ? Digests.digest(content) : null);
+            }
+        };
+        return sharedRenders == null ? renderer.render()
+                : sharedRenders.get(template.getFile().getAbsolutePath(), compiledTemplate, filterValues, renderer);
+    }
+
+    /**
+     * Templates above the configured size are streamed rather than read into memory.
+     */
+    private boolean isStreamed(final FileInfo template) {
+        return template.getFile().length() > configGeneratorParameters.getStreamingTemplateSize();
+    }
+
+    /**
+     * Binary templates and those without placeholders are copied as they are. Only the start
+     * of large templates is read to check, so only binary ones are copied.
+     */
+    private boolean isPassThrough(final FileInfo template, final TemplateCache templateCache) throws IOException {
+        return isStreamed(template) ? BinaryFiles.isBinary(template.getFile()) : templateCache.isPassThrough(template);
+    }
+
+    /**
+     * Render a template straight from disk to the output through a fixed size buffer, leaving
+     * the output open.
+     */
+    private void streamTemplate(final FileInfo template,
+                                final OutputStream out,
+                                final StreamingTemplateRenderer streamingRenderer,
+                                final FilterValues filterValues,
+                                final Set<String> missingProperties) throws IOException {
+        final Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(template.getFile())));
+        try {
+            final Writer writer = new BufferedWriter(StringUtils.isNotBlank(configGeneratorParameters.getEncoding())
+                    ? new OutputStreamWriter(out, configGeneratorParameters.getEncoding())
+                    : new OutputStreamWriter(out));
+            streamingRenderer.render(reader, writer, filterValues, missingProperties);
+            writer.flush();
+        } finally {
+            IOUtils.closeQuietly(reader);
         }
+    }
+
+    private byte[] encode(final String text) throws IOException {
+        return StringUtils.isNotBlank(configGeneratorParameters.getEncoding())
+                ? text.getBytes(configGeneratorParameters.getEncoding())
+                : text.getBytes();
+    }
+
+    /**
+     * Output is written to archives, one per filter, rather than a directory per filter.
+     */
+    private boolean isArchived() {
+        return StringUtils.isNotBlank(configGeneratorParameters.getArchiveFormat());
+    }
+
+    /**
+     * Add missing properties to the filter result for logging out later.
+     */
+    private void addMissingProperties(final Set<String> missingProperties, final FilterResult filterResult) {
         for (final String propertyName : missingProperties) {
-            Set<String> missingPropertiesFromMap = missingPropertiesByFilename.get(filename);
-            if (missingPropertiesFromMap == null) {
-                missingPropertiesFromMap = new LinkedHashSet<String>();
-                missingPropertiesByFilename.put(filename, missingPropertiesFromMap);
+            filterResult.missingProperties.add(propertyName);
+            filterResult.log.info(filterResult.filename + " : " + propertyName);
+        }
+    }
+
+    /**
+     * Delete outputs whose template or filter no longer exists, along with any directories left empty.
+     */
+    private int removeOutputs(final List<String> outputFilenames) {
+        final String outputBaseDirectory = FilenameUtils.separatorsToUnix(FilenameUtils.normalizeNoEndSeparator(configGeneratorParameters.getOutputBasePath())) + PATH_SEPARATOR;
+        int removed = 0;
+        for (final String outputFilename : outputFilenames) {
+            final File outputFile = new File(outputFilename);
+            if (outputFile.delete()) {
+                log.info("Removing : " + StringUtils.replace(outputFilename, configGeneratorParameters.getOutputBasePath(), ""));
+                removed++;
+            }
+            File directory = outputFile.getParentFile();
+            while (directory != null && FilenameUtils.separatorsToUnix(directory.getPath()).startsWith(outputBaseDirectory) && directory.delete()) {
+                directory = directory.getParentFile();
             }
-            missingPropertiesFromMap.add(propertyName);
-            log.info(filename + " : " + propertyName);
         }
+        return removed;
     }
 
     /**
-     * Compile list of every property in all filter io - used to provide dummy values
-     * in missing properties identified in set difference check.
+     * Filter values as rendered, which also depends on which keys other filters define.
      */
-    private Set<String> getAllProperties(List<FileInfo> filters) throws ConfigurationException, IOException {
-        final Set<String> allProperties = new LinkedHashSet<String>();
-        for (final FileInfo filter : filters) {
-            final Properties properties = readFilterIntoProperties(filter);
-            final ImmutableMap<String, String> valueMap = Maps.fromProperties(properties);
-            allProperties.addAll(valueMap.keySet());
+    private String getFilterDigest(final FilterValues filterValues, final FilterSet filterSet) {
+        return Digests.digest(Digests.digest(filterValues.getValues())
+                + Digests.digest(Joiner.on('\n').join(new TreeSet<String>(filterSet.getAllKeys()))));
+    }
+
+    /**
+     * Digest of just the filter values a template references, as they would be rendered, so
+     * that changes to other keys leave the output up to date. Falls back to the digest of the
+     * whole filter for streamed templates, which are too large to index by reading them twice.
+     */
+    private String getReferencedValuesDigest(final FileInfo template,
+                                             final TemplateCache templateCache,
+                                             final BuildManifest manifest,
+                                             final FilterValues filterValues,
+                                             final String filterDigest,
+                                             final Log log) throws IOException {
+        Set<String> placeholders = manifest.getTemplatePlaceholders(template.getFile());
+        if (placeholders == null) {
+            if (!isStreamed(template)) {
+                placeholders = templateCache.getPlaceholders(template);
+            } else if (BinaryFiles.isBinary(template.getFile())) {
+                placeholders = Collections.emptySet();
+            } else {
+                return filterDigest;
+            }
+            manifest.recordTemplatePlaceholders(template.getFile(), placeholders);
+            if (log.isDebugEnabled()) {
+                log.debug("Indexed placeholders : " + template.getFile() + " : " + placeholders);
+            }
+        }
+        final Map<String, String> referencedValues = new HashMap<String, String>();
+        for (final String placeholder : placeholders) {
+            final Set<String> missingProperties = new TreeSet<String>();
+            final String value = filterValues.resolve(placeholder, missingProperties);
+            // Distinguish a placeholder left as it is from any value, along with what it reports missing
+            referencedValues.put(placeholder, (value == null ? "-" : "=" + value) + '\0' + Joiner.on(',').join(missingProperties));
         }
-        return allProperties;
+        return Digests.digest(referencedValues);
     }
 
     /**
-     * Filter io contain the properties we wish to substitute in templates.
-     *
-     * Uses Apache Commons Configuration to load filters.
+     * Log which placeholders each template references, as recorded in the build manifest.
      */
-    private Properties readFilterIntoProperties(final FileInfo filter) throws ConfigurationException, IOException {
-        final CompositeConfiguration composite = new CompositeConfiguration();
-        final List<File> files = filter.getFiles();
-        for (final File file : files) {
-            final PropertiesConfiguration config = new PropertiesConfiguration(file);
-            config.setEncoding(configGeneratorParameters.getEncoding());
-            composite.addConfiguration(config);
+    private void logPlaceholderIndex(final List<FileInfo> templates, final BuildManifest manifest) {
+        if (manifest == null || !log.isDebugEnabled()) {
+            return;
         }
-        if (StringUtils.isNotBlank(configGeneratorParameters.getFilterSourcePropertyName())) {
-            composite.setProperty(configGeneratorParameters.getFilterSourcePropertyName(), filter.getAllSources());
+        for (final FileInfo template : templates) {
+            final Set<String> placeholders = manifest.getTemplatePlaceholders(template.getFile());
+            log.debug("Template placeholders : " + template.getFile() + " : " + (placeholders == null ? "(not indexed)" : placeholders));
         }
-        return ConfigurationConverter.getProperties(composite);
     }
 
     /**
-     * Prepare output io: base-path/filter-sub-dir/template-dir/template.name
+     * Manifest lives alongside the output directory unless configured explicitly.
      */
-    private String createOutputDirectory(final FileInfo template, final FileInfo filter, final String outputBasePath) throws IOException {
-        final String outputDirectory = getOutputPath(template, filter, outputBasePath);
-        final File outputDir = new File(outputDirectory);
-        if (!outputDir.exists()) {
-            log.debug("Creating : " + outputDir);
-            FileUtils.forceMkdir(outputDir);
+    private File getManifestFile() {
+        if (StringUtils.isNotBlank(configGeneratorParameters.getManifestFile())) {
+            return new File(configGeneratorParameters.getManifestFile());
         }
-        return FilenameUtils.normalize(outputDirectory);
+        return new File(StringUtils.removeEnd(FilenameUtils.separatorsToUnix(configGeneratorParameters.getOutputBasePath()), PATH_SEPARATOR) + ".manifest");
     }
 
     /**
-     * Concatenate filter io with template io
+     * Parameters which change generated content for the same template and filter values.
      */
-    private String getOutputPath(final FileInfo template, final FileInfo filter, final String outputBasePath) {
-        final String outputPath = outputBasePath + PATH_SEPARATOR
-                + filter.getRelativeSubDirectory() + PATH_SEPARATOR
-                + filter.getNameWithoutExtension() + PATH_SEPARATOR
-                + template.getRelativeSubDirectory() + PATH_SEPARATOR;
-        return FilenameUtils.separatorsToUnix(FilenameUtils.normalize(outputPath));
+    private String getParametersDigest() {
+        return Digests.digest(Joiner.on('\n').useForNull("").join(
+                configGeneratorParameters.getEncoding(),
+                configGeneratorParameters.getPropertyPrefix(),
+                configGeneratorParameters.getPropertySuffix(),
+                FilenameUtils.separatorsToUnix(configGeneratorParameters.getOutputBasePath())));
+    }
+
+    /**
+     * Filters parsed by previous builds, none if not configured.
+     */
+    private FilterCache readFilterCache() {
+        if (StringUtils.isBlank(configGeneratorParameters.getFilterCacheFile())) {
+            return null;
+        }
+        final String settingsDigest = Digests.digest(Joiner.on('\n').useForNull("").join(
+                configGeneratorParameters.getPropertiesLoader(),
+                configGeneratorParameters.getEncoding(),
+                configGeneratorParameters.getFilterSourcePropertyName()));
+        try {
+            return FilterCache.read(new File(configGeneratorParameters.getFilterCacheFile()), settingsDigest, log);
+        } catch (IOException e) {
+            log.warn("Unable to read filter cache " + configGeneratorParameters.getFilterCacheFile() + ", parsing all filters: " + String.valueOf(e.getMessage()));
+            return null;
+        }
+    }
+
+    /**
+     * The cache only speeds up the next build so failing to write it is not a build failure.
+     */
+    private void writeFilterCache(final FilterCache filterCache, final FilterSet filterSet) {
+        log.debug("Filter cache : " + filterCache.getHits() + " unchanged, " + filterCache.getMisses() + " parsed");
+        final List<String> filterPaths = new ArrayList<String>(filterSet.size());
+        for (final FileInfo filter : filterSet.getFilters()) {
+            filterPaths.add(filter.getFile().getAbsolutePath());
+        }
+        try {
+            filterCache.write(filterPaths, log);
+        } catch (IOException e) {
+            log.warn("Unable to write filter cache " + configGeneratorParameters.getFilterCacheFile() + ": " + String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * Single threaded generation runs on the calling thread, otherwise a fixed size pool.
+     */
+    private ExecutorService createExecutor(final int threads) {
+        if (threads <= 1) {
+            return MoreExecutors.sameThreadExecutor();
+        }
+        log.debug("Generating config using " + threads + " threads");
+        return Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("config-generation-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Wait for a filter to be generated, rethrowing whatever caused it to fail.
+     */
+    private FilterResult getResult(final Future<FilterResult> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Filter's sub-directory and name, without leading separator, as its output is laid out below the output base path.
+     */
+    private String getFilterOutputPath(final FileInfo filter) {
+        return StringUtils.removeStart(FilenameUtils.separatorsToUnix(FilenameUtils.normalize(
+                filter.getRelativeSubDirectory() + PATH_SEPARATOR + filter.getNameWithoutExtension())), PATH_SEPARATOR);
     }
 
     private void logConfigurationParameters() {
@@ -276,4 +870,58 @@ public class ConfigGeneratorImpl {
             log.debug(outputPathMessage);
         }
     }
+
+    /**
+     * Log a summary of where the time went and write the full metrics if configured to.
+     */
+    private void writeMetrics(final GenerationMetrics metrics) throws IOException {
+        metrics.finish();
+        log.info(metrics.getSummary());
+        if (StringUtils.isNotBlank(configGeneratorParameters.getMetricsFile())) {
+            final File metricsFile = new File(configGeneratorParameters.getMetricsFile());
+            metrics.write(metricsFile);
+            log.debug("Config generation metrics written to: " + metricsFile);
+        }
+    }
+
+    /**
+     * Outcome of applying one filter to all templates.
+     */
+    private static class FilterResult {
+        private final String filename;
+        private final DeferredLog log;
+        private final Set<String> missingProperties = new LinkedHashSet<String>();
+        private final List<String> outputFilenames = new ArrayList<String>();
+        private int written;
+        private int identical;
+        private int upToDate;
+        private long expandNanos;
+        private long renderNanos;
+        private long writeNanos;
+        private final List<OutputTiming> outputTimings = new ArrayList<OutputTiming>();
+        private File archive;
+        private String archiveClassifier;
+
+        private FilterResult(final String filename, final DeferredLog log) {
+            this.filename = filename;
+            this.log = log;
+        }
+    }
+
+    /**
+     * Time taken to generate (render and write) a single output.
+     */
+    private static class OutputTiming {
+        private final String outputFilename;
+        private final String templatePath;
+        private final long nanos;
+        private final long bytesWritten;
+
+        private OutputTiming(final String outputFilename, final String templatePath, final long nanos, final long bytesWritten) {
+            this.outputFilename = outputFilename;
+            this.templatePath = templatePath;
+            this.nanos = nanos;
+            this.bytesWritten = bytesWritten;
+        }
+    }
 }
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.ariht.maven.plugins.config.parameters.ConfigGeneratorParameters;
+import com.google.common.base.Preconditions;
+import org.apache.commons.lang.StringUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regenerates config whenever templates or filters change, until closed or interrupted.
+ *
+ * Generation is always incremental so a changed template is only regenerated for each filter
+ * and a changed filter only for each template. Bursts of changes (an IDE saving several files)
+ * are gathered into one regeneration once no further change has been seen for the debounce
+ * period, and the same generator is reused so parsed templates and filters stay in memory.
+ */
+public class ConfigWatcher implements Closeable {
+
+    private final Log log;
+    private final ConfigGeneratorParameters configGeneratorParameters;
+    private final ConfigGeneratorImpl configGenerator;
+    private final long debounceMillis;
+    private final WatchService watchService;
+    private final Runnable afterGenerate;
+
+    public ConfigWatcher(final Log log, final ConfigGeneratorParameters configGeneratorParameters, final long debounceMillis) throws IOException {
+        this(log, configGeneratorParameters, debounceMillis, null);
+    }
+
+    /**
+     * @param afterGenerate optionally run on the watching thread once each generation has finished, whether or not it failed
+     */
+    public ConfigWatcher(final Log log, final ConfigGeneratorParameters configGeneratorParameters, final long debounceMillis,
+                         final Runnable afterGenerate) throws IOException {
+        Preconditions.checkNotNull(log);
+        Preconditions.checkNotNull(configGeneratorParameters);
+        Preconditions.checkArgument(configGeneratorParameters.isIncremental(), "Watching requires incremental generation");
+        Preconditions.checkArgument(debounceMillis >= 0);
+        this.log = log;
+        this.configGeneratorParameters = configGeneratorParameters;
+        this.configGenerator = new ConfigGeneratorImpl(log, configGeneratorParameters);
+        this.debounceMillis = debounceMillis;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.afterGenerate = afterGenerate;
+    }
+
+    /**
+     * Generate then keep regenerating as files change, returning only once closed or interrupted.
+     */
+    public void run() throws IOException {
+        register(configGeneratorParameters.getTemplatesBasePath());
+        register(configGeneratorParameters.getFiltersBasePath());
+        if (configGeneratorParameters.getExternalFilterBasePaths() != null) {
+            for (final String externalFilterBasePath : configGeneratorParameters.getExternalFilterBasePaths()) {
+                register(externalFilterBasePath);
+            }
+        }
+        generate();
+        try {
+            while (true) {
+                final Set<String> changes = new TreeSet<String>();
+                WatchKey key = watchService.take();
+                while (key != null) {
+                    collectChanges(key, changes);
+                    key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                }
+                for (final String change : changes) {
+                    log.info("Changed : " + change);
+                }
+                generate();
+            }
+        } catch (ClosedWatchServiceException e) {
+            log.debug("Stopped watching for changes");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.debug("Interrupted watching for changes");
+        }
+    }
+
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * Failures are logged rather than thrown so that fixing the problem is picked up by the next change.
+     */
+    private void generate() {
+        try {
+            configGenerator.processFiltersIntoTemplates();
+        } catch (MojoExecutionException e) {
+            log.warn("Config generation failed, waiting for the problem to be fixed");
+        } catch (MojoFailureException e) {
+            log.warn("Config generation failed, waiting for the problem to be fixed");
+        }
+        if (afterGenerate != null) {
+            afterGenerate.run();
+        }
+        log.info("Watching for changes to templates and filters...");
+    }
+
+    private void collectChanges(final WatchKey key, final Set<String> changes) throws IOException {
+        final Path directory = (Path) key.watchable();
+        for (final WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changes.add(directory.toString());
+                continue;
+            }
+            final Path path = directory.resolve((Path) event.context());
+            changes.add(path.toString());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                register(path);
+            }
+        }
+        key.reset();
+    }
+
+    private void register(final String basePath) throws IOException {
+        if (StringUtils.isNotBlank(basePath) && new File(basePath).isDirectory()) {
+            register(new File(basePath).toPath());
+        }
+    }
+
+    /**
+     * Directories are watched individually so every sub-directory has to be registered.
+     */
+    private void register(final Path basePath) throws IOException {
+        final List<Path> directories = new ArrayList<Path>();
+        Files.walkFileTree(basePath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path directory, final BasicFileAttributes attributes) {
+                directories.add(directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        for (final Path directory : directories) {
+            log.debug("Watching : " + directory);
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+    }
+}
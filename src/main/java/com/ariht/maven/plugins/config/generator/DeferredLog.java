@@ -0,0 +1,163 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Log that holds messages until they are replayed to the real log, so output from filters
+ * generated concurrently still appears in filter order.
+ */
+public class DeferredLog implements Log {
+
+    private enum Level { DEBUG, INFO, WARN, ERROR }
+
+    private final Log target;
+    private final List<Message> messages = new ArrayList<Message>();
+
+    public DeferredLog(final Log target) {
+        this.target = target;
+    }
+
+    /**
+     * Write out all held messages to the real log, in the order they were logged.
+     */
+    public void replay() {
+        for (final Message message : messages) {
+            message.writeTo(target);
+        }
+        messages.clear();
+    }
+
+    public boolean isDebugEnabled() {
+        return target.isDebugEnabled();
+    }
+
+    public void debug(CharSequence content) {
+        add(Level.DEBUG, content, null);
+    }
+
+    public void debug(CharSequence content, Throwable error) {
+        add(Level.DEBUG, content, error);
+    }
+
+    public void debug(Throwable error) {
+        add(Level.DEBUG, null, error);
+    }
+
+    public boolean isInfoEnabled() {
+        return target.isInfoEnabled();
+    }
+
+    public void info(CharSequence content) {
+        add(Level.INFO, content, null);
+    }
+
+    public void info(CharSequence content, Throwable error) {
+        add(Level.INFO, content, error);
+    }
+
+    public void info(Throwable error) {
+        add(Level.INFO, null, error);
+    }
+
+    public boolean isWarnEnabled() {
+        return target.isWarnEnabled();
+    }
+
+    public void warn(CharSequence content) {
+        add(Level.WARN, content, null);
+    }
+
+    public void warn(CharSequence content, Throwable error) {
+        add(Level.WARN, content, error);
+    }
+
+    public void warn(Throwable error) {
+        add(Level.WARN, null, error);
+    }
+
+    public boolean isErrorEnabled() {
+        return target.isErrorEnabled();
+    }
+
+    public void error(CharSequence content) {
+        add(Level.ERROR, content, null);
+    }
+
+    public void error(CharSequence content, Throwable error) {
+        add(Level.ERROR, content, error);
+    }
+
+    public void error(Throwable error) {
+        add(Level.ERROR, null, error);
+    }
+
+    private void add(final Level level, final CharSequence content, final Throwable error) {
+        if (level == Level.DEBUG && !target.isDebugEnabled()) {
+            return;
+        }
+        messages.add(new Message(level, content == null ? "" : content.toString(), error));
+    }
+
+    private static class Message {
+        private final Level level;
+        private final String content;
+        private final Throwable error;
+
+        private Message(final Level level, final String content, final Throwable error) {
+            this.level = level;
+            this.content = content;
+            this.error = error;
+        }
+
+        private void writeTo(final Log log) {
+            switch (level) {
+                case DEBUG:
+                    if (error == null) {
+                        log.debug(content);
+                    } else {
+                        log.debug(content, error);
+                    }
+                    break;
+                case INFO:
+                    if (error == null) {
+                        log.info(content);
+                    } else {
+                        log.info(content, error);
+                    }
+                    break;
+                case WARN:
+                    if (error == null) {
+                        log.warn(content);
+                    } else {
+                        log.warn(content, error);
+                    }
+                    break;
+                default:
+                    if (error == null) {
+                        log.error(content);
+                    } else {
+                        log.error(content, error);
+                    }
+            }
+        }
+    }
+}
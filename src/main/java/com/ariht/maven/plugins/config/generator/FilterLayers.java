@@ -0,0 +1,211 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.ariht.maven.plugins.config.io.FileInfo;
+import com.ariht.maven.plugins.config.parameters.ConfigGeneratorParameters;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Values that filters inherit from shared parent layers, so that keys common to a hierarchy of
+ * environments (global, region, tier, host...) need only be written once.
+ *
+ * A filter or layer names its parents in the filter parents property as a comma separated list
+ * of files relative to itself, the first listed taking precedence, and parents may declare their
+ * own parents in turn. When a layer filename is configured, a file of that name in the filter's
+ * directory or any directory above it (up to the filters base path) is also a parent, deeper
+ * directories taking precedence over shallower ones and explicitly declared parents over both.
+ * A filter's own values always win.
+ *
+ * Each layer is parsed, and merged with its own parents, once per generation and then shared by
+ * all of its children. Layers are kept between generations and only parsed again when their
+ * size or modification time change. Place-holders within inherited values are still expanded
+ * per filter, so a layer can refer to keys that each child defines differently.
+ *
+ * Not thread-safe, filters are loaded on a single thread.
+ */
+public class FilterLayers {
+
+    private final FilterLoader filterLoader;
+    private final String parentsPropertyName;
+    private final String layerFilename;
+    private final File filtersBaseDirectory;
+    private final Map<String, Layer> layers = new HashMap<String, Layer>();
+    private final Map<String, File> directoryLayers = new HashMap<String, File>();
+    private int generation;
+
+    public FilterLayers(final FilterLoader filterLoader, final ConfigGeneratorParameters configGeneratorParameters) throws IOException {
+        Preconditions.checkNotNull(filterLoader);
+        Preconditions.checkNotNull(configGeneratorParameters);
+        this.filterLoader = filterLoader;
+        this.parentsPropertyName = configGeneratorParameters.getFilterParentsPropertyName();
+        this.layerFilename = configGeneratorParameters.getFilterLayerFilename();
+        this.filtersBaseDirectory = StringUtils.isBlank(configGeneratorParameters.getFiltersBasePath())
+                ? null : new File(configGeneratorParameters.getFiltersBasePath()).getCanonicalFile();
+    }
+
+    /**
+     * Start a new generation, layers changed on disk since the last one are parsed again.
+     */
+    public void refresh() {
+        generation++;
+        directoryLayers.clear();
+    }
+
+    /**
+     * Directory layer files provide values for filters beneath them, they are not filters themselves.
+     */
+    public boolean isLayer(final FileInfo filter) {
+        return StringUtils.isNotBlank(layerFilename) && layerFilename.equals(filter.getName());
+    }
+
+    /**
+     * A filter's own values on top of everything it inherits, without the parents property.
+     */
+    public Map<String, String> inherit(final FileInfo filter, final Map<String, String> ownValues) throws ConfigurationException, IOException {
+        final File file = filter.getFile().getCanonicalFile();
+        final List<File> parents = getParents(file, ownValues);
+        final List<File> directoryParents = getDirectoryLayers(file);
+        if (parents.isEmpty() && directoryParents.isEmpty()) {
+            return ownValues;
+        }
+        final Map<String, String> values = new HashMap<String, String>();
+        for (final File directoryParent : directoryParents) {
+            values.putAll(getLayer(directoryParent, new LinkedList<File>()).values);
+        }
+        putAll(values, parents, Lists.newLinkedList(Collections.singleton(file)));
+        values.putAll(ownValues);
+        values.remove(parentsPropertyName);
+        return values;
+    }
+
+    /**
+     * Parsed and merged once per generation however many filters inherit from it.
+     *
+     * @param chain files currently being resolved, to report any cycle
+     */
+    private Layer getLayer(final File file, final LinkedList<File> chain) throws ConfigurationException, IOException {
+        if (chain.contains(file)) {
+            chain.add(file);
+            throw new ConfigurationException("Filter parents form a cycle: " + Joiner.on(" -> ").join(chain));
+        }
+        if (!file.isFile()) {
+            throw new FileNotFoundException("Parent filter not found: " + file + (chain.isEmpty() ? "" : " (parent of " + chain.getLast() + ")"));
+        }
+        final String path = file.getPath();
+        final String stamp = file.length() + "|" + file.lastModified();
+        Layer layer = layers.get(path);
+        if (layer != null && layer.generation == generation) {
+            return layer;
+        }
+        final Map<String, String> ownValues = layer != null && layer.stamp.equals(stamp) ? layer.ownValues : filterLoader.loadLayer(file);
+        final Map<String, String> values = new HashMap<String, String>();
+        chain.add(file);
+        putAll(values, getParents(file, ownValues), chain);
+        chain.removeLast();
+        values.putAll(ownValues);
+        values.remove(parentsPropertyName);
+        layer = new Layer(generation, stamp, ownValues, Collections.unmodifiableMap(values));
+        layers.put(path, layer);
+        return layer;
+    }
+
+    /**
+     * First listed parent wins so they are applied last to first.
+     */
+    private void putAll(final Map<String, String> values, final List<File> parents, final LinkedList<File> chain) throws ConfigurationException, IOException {
+        for (final File parent : Lists.reverse(parents)) {
+            values.putAll(getLayer(parent, chain).values);
+        }
+    }
+
+    private List<File> getParents(final File file, final Map<String, String> ownValues) throws IOException {
+        final String declared = StringUtils.isBlank(parentsPropertyName) ? null : ownValues.get(parentsPropertyName);
+        if (StringUtils.isBlank(declared)) {
+            return Collections.emptyList();
+        }
+        final List<File> parents = new ArrayList<File>();
+        for (final String parent : Splitter.on(',').trimResults().omitEmptyStrings().split(declared)) {
+            final File parentFile = new File(parent);
+            parents.add((parentFile.isAbsolute() ? parentFile : new File(file.getParentFile(), parent)).getCanonicalFile());
+        }
+        return parents;
+    }
+
+    /**
+     * Layer files from the filters base directory down to the filter's own directory.
+     */
+    private List<File> getDirectoryLayers(final File file) {
+        if (StringUtils.isBlank(layerFilename) || filtersBaseDirectory == null) {
+            return Collections.emptyList();
+        }
+        final LinkedList<File> layerFiles = new LinkedList<File>();
+        File directory = file.getParentFile();
+        while (directory != null && directory.toPath().startsWith(filtersBaseDirectory.toPath())) {
+            final File layerFile = getDirectoryLayer(directory);
+            if (layerFile != null && !layerFile.equals(file)) {
+                layerFiles.addFirst(layerFile);
+            }
+            if (directory.equals(filtersBaseDirectory)) {
+                break;
+            }
+            directory = directory.getParentFile();
+        }
+        return layerFiles;
+    }
+
+    /**
+     * Looked up once per directory per generation as most filters share their directories.
+     */
+    private File getDirectoryLayer(final File directory) {
+        final String path = directory.getPath();
+        if (!directoryLayers.containsKey(path)) {
+            final File layerFile = new File(directory, layerFilename);
+            directoryLayers.put(path, layerFile.isFile() ? layerFile : null);
+        }
+        return directoryLayers.get(path);
+    }
+
+    private static class Layer {
+        private final int generation;
+        private final String stamp;
+        private final Map<String, String> ownValues;
+        private final Map<String, String> values;
+
+        private Layer(final int generation, final String stamp, final Map<String, String> ownValues, final Map<String, String> values) {
+            this.generation = generation;
+            this.stamp = stamp;
+            this.ownValues = ownValues;
+            this.values = values;
+        }
+    }
+}
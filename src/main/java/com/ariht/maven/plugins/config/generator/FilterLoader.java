@@ -0,0 +1,258 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.ariht.maven.plugins.config.io.FileInfo;
+import com.ariht.maven.plugins.config.io.FilterCache;
+import com.ariht.maven.plugins.config.parameters.ConfigGeneratorParameters;
+import com.ariht.maven.plugins.config.parameters.PropertiesLoader;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.apache.commons.configuration.CompositeConfiguration;
+import org.apache.commons.configuration.ConfigurationConverter;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.MapConfiguration;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Filter io contain the properties we wish to substitute in templates.
+ *
+ * Uses Apache Commons Configuration to load filters, the filter file itself takes precedence
+ * over any external files (first value wins). The native loader keeps the same layering and
+ * filter source property but reads each file with the JDK's properties parser straight into a
+ * map, skipping Commons Configuration's list splitting, interpolation and events. Place-holders
+ * are expanded later for every filter either way.
+ *
+ * Given a reactor cache each file is parsed once for the whole build, however many filters,
+ * modules or executions read it. Given a filter cache, filters whose files are unchanged since
+ * a previous build are not parsed at all. The cache holds values as written, interpolated as
+ * they are read, so lookups such as ${env:...} or ${sys:...} are resolved afresh every build.
+ */
+public class FilterLoader {
+
+    private final ConfigGeneratorParameters configGeneratorParameters;
+    private final ReactorCache reactorCache;
+    private final FilterCache filterCache;
+
+    public FilterLoader(final ConfigGeneratorParameters configGeneratorParameters) {
+        this(configGeneratorParameters, null);
+    }
+
+    /**
+     * @param reactorCache files parsed by other generations in the build, may be null
+     */
+    public FilterLoader(final ConfigGeneratorParameters configGeneratorParameters, final ReactorCache reactorCache) {
+        this(configGeneratorParameters, reactorCache, null);
+    }
+
+    /**
+     * @param reactorCache files parsed by other generations in the build, may be null
+     * @param filterCache filters parsed by previous builds, may be null
+     */
+    public FilterLoader(final ConfigGeneratorParameters configGeneratorParameters,
+                        final ReactorCache reactorCache,
+                        final FilterCache filterCache) {
+        Preconditions.checkNotNull(configGeneratorParameters);
+        this.configGeneratorParameters = configGeneratorParameters;
+        this.reactorCache = reactorCache;
+        this.filterCache = filterCache;
+    }
+
+    public Map<String, String> load(final FileInfo filter) throws ConfigurationException, IOException {
+        if (filterCache == null) {
+            return parse(filter);
+        }
+        final String path = filter.getFile().getAbsolutePath();
+        final String filesDigest = FilterCache.digest(filter.getFiles());
+        Map<String, String> values = filterCache.get(path, filesDigest);
+        if (values == null) {
+            values = parseRaw(filter);
+            filterCache.put(path, filesDigest, values);
+        }
+        return interpolate(values);
+    }
+
+    private Map<String, String> parse(final FileInfo filter) throws ConfigurationException, IOException {
+        if (configGeneratorParameters.getPropertiesLoader() == PropertiesLoader.NATIVE) {
+            return loadNative(filter);
+        }
+        return Maps.fromProperties(ConfigurationConverter.getProperties(getComposite(filter)));
+    }
+
+    /**
+     * As parsed but without Commons Configuration's interpolation, to be kept in the filter cache.
+     */
+    private Map<String, String> parseRaw(final FileInfo filter) throws ConfigurationException, IOException {
+        if (configGeneratorParameters.getPropertiesLoader() == PropertiesLoader.NATIVE) {
+            return loadNative(filter);
+        }
+        return getRaw(getComposite(filter));
+    }
+
+    /**
+     * Values read from the filter cache interpolated as Commons Configuration would have on
+     * parsing. The native loader never interpolates so its values are returned as they are.
+     */
+    private Map<String, String> interpolate(final Map<String, String> rawValues) {
+        if (configGeneratorParameters.getPropertiesLoader() == PropertiesLoader.NATIVE) {
+            return rawValues;
+        }
+        final MapConfiguration config = new MapConfiguration(rawValues);
+        // Lists were already joined, splitting them again would trim escaped delimiters
+        config.setDelimiterParsingDisabled(true);
+        return Maps.fromProperties(ConfigurationConverter.getProperties(config));
+    }
+
+    private CompositeConfiguration getComposite(final FileInfo filter) throws ConfigurationException, IOException {
+        final CompositeConfiguration composite = new CompositeConfiguration();
+        final List<File> files = filter.getFiles();
+        for (final File file : files) {
+            composite.addConfiguration(getConfiguration(file));
+        }
+        if (StringUtils.isNotBlank(configGeneratorParameters.getFilterSourcePropertyName())) {
+            composite.setProperty(configGeneratorParameters.getFilterSourcePropertyName(), filter.getAllSources());
+        }
+        return composite;
+    }
+
+    /**
+     * A parent layer's own values, from that one file. Place-holders are left as written so they
+     * are expanded against the values each child ends up with, not the layer's own.
+     */
+    public Map<String, String> loadLayer(final File file) throws ConfigurationException, IOException {
+        if (configGeneratorParameters.getPropertiesLoader() == PropertiesLoader.NATIVE) {
+            return getNative(file);
+        }
+        return getRaw(getConfiguration(file));
+    }
+
+    /**
+     * Values as ConfigurationConverter renders them, lists joined by the list delimiter, but
+     * without interpolation.
+     */
+    private static Map<String, String> getRaw(final AbstractConfiguration config) {
+        final Map<String, String> values = new HashMap<String, String>();
+        final Iterator<String> keys = config.getKeys();
+        while (keys.hasNext()) {
+            final String key = keys.next();
+            final Object value = config.getProperty(key);
+            values.put(key, value instanceof Collection
+                    ? StringUtils.join(((Collection<?>) value).iterator(), config.getListDelimiter())
+                    : String.valueOf(value));
+        }
+        return ImmutableMap.copyOf(values);
+    }
+
+    private Map<String, String> loadNative(final FileInfo filter) throws ConfigurationException, IOException {
+        final Map<String, String> values = new HashMap<String, String>();
+        for (final File file : filter.getFiles()) {
+            for (final Map.Entry<String, String> entry : getNative(file).entrySet()) {
+                if (!values.containsKey(entry.getKey())) {
+                    values.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        if (StringUtils.isNotBlank(configGeneratorParameters.getFilterSourcePropertyName())) {
+            // Sources as Commons Configuration has always rendered them, split as a list and re-joined
+            values.put(configGeneratorParameters.getFilterSourcePropertyName(),
+                    Joiner.on(',').join(Splitter.on(',').trimResults().split(filter.getAllSources())));
+        }
+        return ImmutableMap.copyOf(values);
+    }
+
+    /**
+     * Parsed file, shared with the rest of the build when there is a reactor cache. Never
+     * modified once loaded so it is safe to share between filters and threads.
+     */
+    private PropertiesConfiguration getConfiguration(final File file) throws ConfigurationException, IOException {
+        if (reactorCache == null) {
+            return readConfiguration(file);
+        }
+        return reactorCache.get(PropertiesLoader.COMMONS_CONFIGURATION + "|" + configGeneratorParameters.getEncoding(), file,
+                new ReactorCache.Loader<PropertiesConfiguration>() {
+                    public PropertiesConfiguration load(final File file) throws ConfigurationException {
+                        return readConfiguration(file);
+                    }
+                });
+    }
+
+    private PropertiesConfiguration readConfiguration(final File file) throws ConfigurationException {
+        final PropertiesConfiguration config = new PropertiesConfiguration(file);
+        config.setEncoding(configGeneratorParameters.getEncoding());
+        return config;
+    }
+
+    private Map<String, String> getNative(final File file) throws ConfigurationException, IOException {
+        if (reactorCache == null) {
+            return ImmutableMap.copyOf(readNative(file));
+        }
+        return reactorCache.get(PropertiesLoader.NATIVE.toString(), file, new ReactorCache.Loader<Map<String, String>>() {
+            public Map<String, String> load(final File file) throws IOException {
+                return ImmutableMap.copyOf(readNative(file));
+            }
+        });
+    }
+
+    /**
+     * Read as ISO-8859-1 with unicode escapes, exactly as Commons Configuration reads filters.
+     */
+    private static Map<String, String> readNative(final File file) throws IOException {
+        final Map<String, String> values = new HashMap<String, String>();
+        final InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            new MapProperties(values).load(in);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        return values;
+    }
+
+    /**
+     * Parsed entries go straight into the given map rather than the synchronised table. Values
+     * are trimmed as Commons Configuration does, so trailing whitespace never reaches output.
+     */
+    private static class MapProperties extends Properties {
+        private final transient Map<String, String> values;
+
+        private MapProperties(final Map<String, String> values) {
+            this.values = values;
+        }
+
+        @Override
+        public synchronized Object put(final Object key, final Object value) {
+            return values.put((String) key, ((String) value).trim());
+        }
+    }
+}
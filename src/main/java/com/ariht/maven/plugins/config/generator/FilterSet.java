@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.ariht.maven.plugins.config.io.FileInfo;
+import com.google.common.base.Preconditions;
+import org.apache.commons.configuration.ConfigurationException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Every filter (with its external files) parsed exactly once, indexed by filter, together with
+ * the set of every key found in any filter. Used both to work out which properties each filter
+ * is missing and as the source of values when rendering templates.
+ *
+ * When regenerating repeatedly the previous set can be passed in, filters whose files are
+ * unchanged (by size and modification time) are then not parsed again. Values inherited from
+ * parent layers are merged in by {@link FilterLayers} when given.
+ *
+ * Values are held by slot in a {@link KeyDictionary} shared by every filter, and by the sets
+ * loaded after this one from it, so that filters carried over keep their values as they are.
+ */
+public class FilterSet {
+
+    private final KeyDictionary dictionary;
+    private final Map<FileInfo, Map<String, String>> valuesByFilter;
+    private final Map<String, LoadedFilter> loadedFilters;
+    private final Set<String> allKeys;
+
+    private FilterSet(final KeyDictionary dictionary,
+                      final Map<FileInfo, Map<String, String>> valuesByFilter,
+                      final Map<String, LoadedFilter> loadedFilters,
+                      final Set<String> allKeys) {
+        this.dictionary = dictionary;
+        this.valuesByFilter = Collections.unmodifiableMap(valuesByFilter);
+        this.loadedFilters = loadedFilters;
+        this.allKeys = Collections.unmodifiableSet(allKeys);
+    }
+
+    public static FilterSet load(final FilterLoader filterLoader, final List<FileInfo> filters) throws ConfigurationException, IOException {
+        return load(filterLoader, filters, null);
+    }
+
+    /**
+     * @param previous filters loaded last time, reused where unchanged, may be null
+     */
+    public static FilterSet load(final FilterLoader filterLoader, final List<FileInfo> filters, final FilterSet previous) throws ConfigurationException, IOException {
+        return load(filterLoader, null, filters, previous);
+    }
+
+    /**
+     * @param filterLayers parent layers to inherit values from, may be null
+     * @param previous filters loaded last time, reused where unchanged, may be null
+     */
+    public static FilterSet load(final FilterLoader filterLoader,
+                                 final FilterLayers filterLayers,
+                                 final List<FileInfo> filters,
+                                 final FilterSet previous) throws ConfigurationException, IOException {
+        Preconditions.checkNotNull(filterLoader);
+        if (filterLayers != null) {
+            filterLayers.refresh();
+        }
+        final KeyDictionary dictionary = previous == null ? new KeyDictionary() : previous.dictionary;
+        final Map<FileInfo, Map<String, String>> valuesByFilter = new LinkedHashMap<FileInfo, Map<String, String>>();
+        final Map<String, LoadedFilter> loadedFilters = new HashMap<String, LoadedFilter>();
+        final Set<String> allKeys = new LinkedHashSet<String>();
+        for (final FileInfo filter : filters) {
+            final String path = filter.getFile().getAbsolutePath();
+            final String stamp = getStamp(filter);
+            LoadedFilter loadedFilter = previous == null ? null : previous.loadedFilters.get(path);
+            if (loadedFilter == null || !loadedFilter.stamp.equals(stamp)) {
+                loadedFilter = new LoadedFilter(stamp, dictionary.toValues(filterLoader.load(filter)));
+            }
+            loadedFilters.put(path, loadedFilter);
+            final Map<String, String> values = filterLayers == null ? loadedFilter.values
+                    : dictionary.toValues(filterLayers.inherit(filter, loadedFilter.values));
+            valuesByFilter.put(filter, values);
+            allKeys.addAll(values.keySet());
+        }
+        return new FilterSet(dictionary, valuesByFilter, loadedFilters, allKeys);
+    }
+
+    /**
+     * Paths, sizes and modification times of the filter and its external files.
+     */
+    private static String getStamp(final FileInfo filter) {
+        final StringBuilder sb = new StringBuilder();
+        for (final File file : filter.getFiles()) {
+            sb.append(file.getAbsolutePath()).append('|').append(file.length()).append('|').append(file.lastModified()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Filters in the order they were read.
+     */
+    public Set<FileInfo> getFilters() {
+        return valuesByFilter.keySet();
+    }
+
+    public Map<String, String> getValues(final FileInfo filter) {
+        return valuesByFilter.get(filter);
+    }
+
+    /**
+     * Slots of every key, including any only found by sets loaded before this one.
+     */
+    public KeyDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Every key that appears in at least one filter.
+     */
+    public Set<String> getAllKeys() {
+        return allKeys;
+    }
+
+    public int size() {
+        return valuesByFilter.size();
+    }
+
+    private static class LoadedFilter {
+        private final String stamp;
+        private final Map<String, String> values;
+
+        private LoadedFilter(final String stamp, final Map<String, String> values) {
+            this.stamp = stamp;
+            this.values = values;
+        }
+    }
+}
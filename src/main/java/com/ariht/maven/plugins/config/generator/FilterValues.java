@@ -0,0 +1,270 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.google.common.base.Preconditions;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One filter's values with any place-holders inside them expanded, ready for rendering.
+ *
+ * Properties that cannot be resolved are recorded by the renderer as it meets them rather
+ * than found afterwards: a place-holder for a key defined only in other filters is rendered
+ * as {@code <<<<<<< key >>>>>>>}, one for a key defined in no filter at all is left as it
+ * is, and both are reported as missing. A value that referred to a missing property reports
+ * that property wherever the value is used. Names too long to be worth reporting in full are
+ * reported by their start.
+ */
+public class FilterValues {
+
+    public static final String MISSING_PROPERTY_PREFIX = "<<<<<<< ";
+    public static final String MISSING_PROPERTY_SUFFIX = " >>>>>>>";
+    static final int MAX_REPORTED_NAME_LENGTH = 1024;
+    private static final String TRUNCATED_NAME_SUFFIX = "...";
+
+    private final KeyDictionary dictionary;
+    // Expanded values and what each is missing, indexed by slot
+    private final String[] values;
+    private final Set<String>[] missingPropertiesBySlot;
+    private final Set<String> allKeys;
+
+    private FilterValues(final KeyDictionary dictionary, final String[] values, final Set<String>[] missingPropertiesBySlot, final Set<String> allKeys) {
+        this.dictionary = dictionary;
+        this.values = values;
+        this.missingPropertiesBySlot = missingPropertiesBySlot;
+        this.allKeys = allKeys;
+    }
+
+    /**
+     * Expand place-holders within a filter's values, numbering keys in a dictionary of their own.
+     *
+     * @param allKeys every key defined in any filter
+     * @see #expand(Map, KeyDictionary, Set, String, String)
+     */
+    public static FilterValues expand(final Map<String, String> filterValues, final Set<String> allKeys, final String prefix, final String suffix) {
+        Preconditions.checkNotNull(allKeys);
+        final KeyDictionary dictionary = new KeyDictionary();
+        for (final String key : allKeys) {
+            dictionary.add(key);
+        }
+        return expand(filterValues, dictionary, allKeys, prefix, suffix);
+    }
+
+    /**
+     * Expand place-holders within a filter's values, once per filter so that rendering a
+     * template is only ever a flat lookup. Each value is expanded once however many values
+     * refer to it, those it refers to being expanded first.
+     *
+     * @param dictionary numbers the keys, shared by every filter
+     * @param allKeys every key defined in any filter
+     * @throws IllegalArgumentException if values refer to each other in a loop, naming the keys involved
+     */
+    public static FilterValues expand(final Map<String, String> filterValues,
+                                      final KeyDictionary dictionary,
+                                      final Set<String> allKeys,
+                                      final String prefix,
+                                      final String suffix) {
+        Preconditions.checkNotNull(filterValues);
+        Preconditions.checkNotNull(dictionary);
+        Preconditions.checkNotNull(allKeys);
+        Preconditions.checkArgument(StringUtils.isNotEmpty(prefix));
+        Preconditions.checkArgument(StringUtils.isNotEmpty(suffix));
+        final Expander expander = new Expander(dictionary.toSlots(filterValues), dictionary, allKeys, prefix, suffix);
+        for (int slot = 0; slot < expander.values.length; slot++) {
+            expander.expand(slot);
+        }
+        return new FilterValues(dictionary, expander.expandedValues, expander.missingPropertiesBySlot, allKeys);
+    }
+
+    /**
+     * Text to substitute for a place-holder, or null to leave the place-holder as it is.
+     * Any properties the result is missing are added to missingProperties.
+     */
+    public String resolve(final String name, final Set<String> missingProperties) {
+        return resolve(dictionary.getSlot(name), name, missingProperties);
+    }
+
+    /**
+     * As {@link #resolve(String, Set)} for a name already looked up in the dictionary.
+     */
+    String resolve(final int slot, final String name, final Set<String> missingProperties) {
+        final String value = slot < 0 || slot >= values.length ? null : values[slot];
+        if (value != null) {
+            final Set<String> missing = missingPropertiesBySlot[slot];
+            if (missing != null) {
+                missingProperties.addAll(missing);
+            }
+            return value;
+        }
+        return resolveMissing(name, allKeys, missingProperties);
+    }
+
+    /**
+     * Expanded value held in the slot, null if this filter has none.
+     */
+    String getValue(final int slot) {
+        return slot < 0 || slot >= values.length ? null : values[slot];
+    }
+
+    /**
+     * Properties the value held in the slot is missing, null if none.
+     */
+    Set<String> getMissingProperties(final int slot) {
+        return slot < 0 || slot >= values.length ? null : missingPropertiesBySlot[slot];
+    }
+
+    /**
+     * Expanded values, without any rendering of missing properties.
+     */
+    public Map<String, String> getValues() {
+        return dictionary.new Values(values);
+    }
+
+    KeyDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Longest name that can resolve to anything other than null.
+     */
+    public int getMaxKeyLength() {
+        return dictionary.getMaxKeyLength();
+    }
+
+    private static String resolveMissing(final String name, final Set<String> allKeys, final Set<String> missingProperties) {
+        addMissing(name, missingProperties);
+        return allKeys.contains(name) ? MISSING_PROPERTY_PREFIX + name + MISSING_PROPERTY_SUFFIX : null;
+    }
+
+    /**
+     * Report a name that could not be resolved, cut short if too long, the same whether
+     * rendered in memory or streamed.
+     */
+    static void addMissing(final String name, final Set<String> missingProperties) {
+        if (StringUtils.isBlank(name)) {
+            return;
+        }
+        missingProperties.add(name.length() > MAX_REPORTED_NAME_LENGTH
+                ? name.substring(0, MAX_REPORTED_NAME_LENGTH) + TRUNCATED_NAME_SUFFIX : name);
+    }
+
+    /**
+     * Expands values depth first, remembering each expanded value and the properties it is
+     * missing. Follows StrSubstitutor's rules: a place-holder preceded by '$' is left in place
+     * without the '$', and one that cannot be resolved is left as it is.
+     */
+    private static class Expander {
+        private static final char ESCAPE = '$';
+
+        private final String[] values;
+        private final KeyDictionary dictionary;
+        private final Set<String> allKeys;
+        private final String prefix;
+        private final String suffix;
+        private final String[] expandedValues;
+        private final Set<String>[] missingPropertiesBySlot;
+        // Slots being expanded, in the order they were referenced
+        private final List<Integer> expanding = new ArrayList<Integer>();
+        private final BitSet expanded = new BitSet();
+
+        @SuppressWarnings("unchecked")
+        private Expander(final String[] values, final KeyDictionary dictionary, final Set<String> allKeys, final String prefix, final String suffix) {
+            this.values = values;
+            this.dictionary = dictionary;
+            this.allKeys = allKeys;
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.expandedValues = values.clone();
+            this.missingPropertiesBySlot = new Set[values.length];
+        }
+
+        private void expand(final int slot) {
+            if (expanded.get(slot)) {
+                return;
+            }
+            final String value = values[slot];
+            if (value != null && value.contains(prefix)) {
+                if (expanding.contains(slot)) {
+                    throw new IllegalArgumentException("Circular reference in filter values: "
+                            + StringUtils.join(getCycle(slot), " -> "));
+                }
+                expanding.add(slot);
+                final Set<String> missingProperties = new LinkedHashSet<String>();
+                expandedValues[slot] = substitute(value, missingProperties);
+                if (!missingProperties.isEmpty()) {
+                    missingPropertiesBySlot[slot] = missingProperties;
+                }
+                expanding.remove(expanding.size() - 1);
+            }
+            expanded.set(slot);
+        }
+
+        private String substitute(final String value, final Set<String> missingProperties) {
+            final StringBuilder sb = new StringBuilder(value.length() * 2);
+            int pos = 0;
+            int start;
+            while ((start = value.indexOf(prefix, pos)) >= 0) {
+                sb.append(value, pos, start);
+                if (sb.length() > 0 && sb.charAt(sb.length() - 1) == ESCAPE) {
+                    // Escaped so the place-holder is kept, looking for the next one from within it
+                    sb.setCharAt(sb.length() - 1, value.charAt(start));
+                    pos = start + 1;
+                    continue;
+                }
+                final int end = value.indexOf(suffix, start + prefix.length());
+                if (end < 0) {
+                    pos = start;
+                    break;
+                }
+                pos = end + suffix.length();
+                final String name = value.substring(start + prefix.length(), end);
+                final String resolved = lookup(name, missingProperties);
+                sb.append(resolved != null ? resolved : value.substring(start, pos));
+            }
+            return sb.append(value, pos, value.length()).toString();
+        }
+
+        private String lookup(final String name, final Set<String> missingProperties) {
+            final int slot = dictionary.getSlot(name);
+            if (slot < 0 || slot >= values.length || values[slot] == null) {
+                return resolveMissing(name, allKeys, missingProperties);
+            }
+            expand(slot);
+            final Set<String> missing = missingPropertiesBySlot[slot];
+            if (missing != null) {
+                missingProperties.addAll(missing);
+            }
+            return expandedValues[slot];
+        }
+
+        private List<String> getCycle(final int slot) {
+            final List<String> cycle = new ArrayList<String>();
+            for (final int expandingSlot : expanding.subList(expanding.indexOf(slot), expanding.size())) {
+                cycle.add(dictionary.getKey(expandingSlot));
+            }
+            cycle.add(dictionary.getKey(slot));
+            return cycle;
+        }
+    }
+}
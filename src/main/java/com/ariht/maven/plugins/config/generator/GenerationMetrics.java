@@ -0,0 +1,292 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Where the time went in one generation run: wall time per phase, counts, bytes read and
+ * written per filter and per template, and the slowest outputs. Written as JSON for build
+ * dashboards and summarised in the log.
+ *
+ * Rendering phases run once per filter, possibly concurrently, so their times are summed across
+ * threads rather than wall time. Only updated from the thread running the generation.
+ */
+public class GenerationMetrics {
+
+    public enum Phase {
+        PREPARE("prepare"),
+        SCAN("scan"),
+        TEMPLATE_LOAD("templateLoad"),
+        FILTER_PARSE("filterParse"),
+        GENERATE("generate"),
+        EXPAND("expand"),
+        RENDER("render"),
+        WRITE("write"),
+        REMOVE("remove");
+
+        private final String name;
+
+        Phase(final String name) {
+            this.name = name;
+        }
+    }
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private final int slowestOutputCount;
+    private final long startNanos = System.nanoTime();
+    private final Map<Phase, Long> phaseNanos = new EnumMap<Phase, Long>(Phase.class);
+    private final Map<String, Totals> filters = new LinkedHashMap<String, Totals>();
+    private final Map<String, Totals> templates = new LinkedHashMap<String, Totals>();
+    private final PriorityQueue<Output> slowestOutputs = new PriorityQueue<Output>(11, Output.BY_NANOS);
+    private long totalNanos;
+    private int threads = 1;
+    private int written;
+    private int unchanged;
+    private int upToDate;
+    private int removed;
+    private int missingProperties;
+
+    public GenerationMetrics(final int slowestOutputCount) {
+        this.slowestOutputCount = slowestOutputCount;
+    }
+
+    public void addPhase(final Phase phase, final long nanos) {
+        final Long previous = phaseNanos.get(phase);
+        phaseNanos.put(phase, previous == null ? nanos : previous + nanos);
+    }
+
+    public void addFilter(final String path, final long bytesRead) {
+        getTotals(filters, path).bytesRead += bytesRead;
+    }
+
+    public void addTemplate(final String path, final long bytesRead) {
+        getTotals(templates, path).bytesRead += bytesRead;
+    }
+
+    /**
+     * An output that was generated (written or found unchanged), not one skipped as up to date.
+     */
+    public void addOutput(final String outputFilename, final String filterPath, final String templatePath, final long nanos, final long bytesWritten) {
+        for (final Totals totals : new Totals[] {getTotals(filters, filterPath), getTotals(templates, templatePath)}) {
+            totals.outputs++;
+            totals.nanos += nanos;
+            totals.bytesWritten += bytesWritten;
+        }
+        if (slowestOutputCount > 0) {
+            slowestOutputs.add(new Output(outputFilename, filterPath, templatePath, nanos, bytesWritten));
+            if (slowestOutputs.size() > slowestOutputCount) {
+                slowestOutputs.poll();
+            }
+        }
+    }
+
+    public void setThreads(final int threads) {
+        this.threads = threads;
+    }
+
+    public void setCounts(final int written, final int unchanged, final int upToDate, final int removed, final int missingProperties) {
+        this.written = written;
+        this.unchanged = unchanged;
+        this.upToDate = upToDate;
+        this.removed = removed;
+        this.missingProperties = missingProperties;
+    }
+
+    /**
+     * Stop the clock for the run as a whole.
+     */
+    public void finish() {
+        totalNanos = System.nanoTime() - startNanos;
+    }
+
+    public String getSummary() {
+        final StringBuilder sb = new StringBuilder("Config generation took ").append(formatMillis(totalNanos)).append(" ms (");
+        String separator = "";
+        for (final Map.Entry<Phase, Long> entry : phaseNanos.entrySet()) {
+            sb.append(separator).append(entry.getKey().name).append(' ').append(formatMillis(entry.getValue())).append(" ms");
+            separator = ", ";
+        }
+        sb.append("), ").append(written + unchanged).append(" outputs, ").append(getBytesWritten()).append(" bytes written");
+        final List<Output> slowest = getSlowestOutputs();
+        if (!slowest.isEmpty()) {
+            sb.append(", slowest ").append(slowest.get(0).path).append(" ").append(formatMillis(slowest.get(0).nanos)).append(" ms");
+        }
+        return sb.toString();
+    }
+
+    public void write(final File file) throws IOException {
+        FileUtils.writeStringToFile(file, toJson(), Charsets.UTF_8.name());
+    }
+
+    public String toJson() {
+        final StringBuilder sb = new StringBuilder("{\n");
+        sb.append("  \"totalMillis\": ").append(formatMillis(totalNanos)).append(",\n");
+        sb.append("  \"threads\": ").append(threads).append(",\n");
+        sb.append("  \"phasesMillis\": {");
+        String separator = "";
+        for (final Map.Entry<Phase, Long> entry : phaseNanos.entrySet()) {
+            sb.append(separator).append("\n    ").append(quote(entry.getKey().name)).append(": ").append(formatMillis(entry.getValue()));
+            separator = ",";
+        }
+        sb.append("\n  },\n");
+        sb.append("  \"counts\": {\"filters\": ").append(filters.size())
+                .append(", \"templates\": ").append(templates.size())
+                .append(", \"written\": ").append(written)
+                .append(", \"unchanged\": ").append(unchanged)
+                .append(", \"upToDate\": ").append(upToDate)
+                .append(", \"removed\": ").append(removed)
+                .append(", \"missingProperties\": ").append(missingProperties).append("},\n");
+        sb.append("  \"bytes\": {\"filtersRead\": ").append(getBytesRead(filters))
+                .append(", \"templatesRead\": ").append(getBytesRead(templates))
+                .append(", \"written\": ").append(getBytesWritten()).append("},\n");
+        appendTotals(sb, "filters", filters);
+        sb.append(",\n");
+        appendTotals(sb, "templates", templates);
+        sb.append(",\n  \"slowestOutputs\": [");
+        separator = "";
+        for (final Output output : getSlowestOutputs()) {
+            sb.append(separator).append("\n    {\"path\": ").append(quote(output.path))
+                    .append(", \"filter\": ").append(quote(output.filterPath))
+                    .append(", \"template\": ").append(quote(output.templatePath))
+                    .append(", \"bytesWritten\": ").append(output.bytesWritten)
+                    .append(", \"millis\": ").append(formatMillis(output.nanos)).append("}");
+            separator = ",";
+        }
+        sb.append("\n  ]\n}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Slowest first.
+     */
+    public List<Output> getSlowestOutputs() {
+        final List<Output> slowest = new ArrayList<Output>(slowestOutputs);
+        Collections.sort(slowest, Collections.reverseOrder(Output.BY_NANOS));
+        return slowest;
+    }
+
+    private long getBytesWritten() {
+        long bytes = 0;
+        for (final Totals totals : filters.values()) {
+            bytes += totals.bytesWritten;
+        }
+        return bytes;
+    }
+
+    private static long getBytesRead(final Map<String, Totals> totalsByPath) {
+        long bytes = 0;
+        for (final Totals totals : totalsByPath.values()) {
+            bytes += totals.bytesRead;
+        }
+        return bytes;
+    }
+
+    private static void appendTotals(final StringBuilder sb, final String name, final Map<String, Totals> totalsByPath) {
+        sb.append("  ").append(quote(name)).append(": [");
+        String separator = "";
+        for (final Map.Entry<String, Totals> entry : totalsByPath.entrySet()) {
+            final Totals totals = entry.getValue();
+            sb.append(separator).append("\n    {\"path\": ").append(quote(entry.getKey()))
+                    .append(", \"outputs\": ").append(totals.outputs)
+                    .append(", \"bytesRead\": ").append(totals.bytesRead)
+                    .append(", \"bytesWritten\": ").append(totals.bytesWritten)
+                    .append(", \"millis\": ").append(formatMillis(totals.nanos)).append("}");
+            separator = ",";
+        }
+        sb.append("\n  ]");
+    }
+
+    private static Totals getTotals(final Map<String, Totals> totalsByPath, final String path) {
+        Totals totals = totalsByPath.get(path);
+        if (totals == null) {
+            totals = new Totals();
+            totalsByPath.put(path, totals);
+        }
+        return totals;
+    }
+
+    private static String formatMillis(final long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / NANOS_PER_MILLI);
+    }
+
+    private static String quote(final String value) {
+        final StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static class Totals {
+        private int outputs;
+        private long bytesRead;
+        private long bytesWritten;
+        private long nanos;
+    }
+
+    public static class Output {
+        private static final Comparator<Output> BY_NANOS = new Comparator<Output>() {
+            public int compare(final Output o1, final Output o2) {
+                return o1.nanos < o2.nanos ? -1 : (o1.nanos == o2.nanos ? 0 : 1);
+            }
+        };
+
+        private final String path;
+        private final String filterPath;
+        private final String templatePath;
+        private final long nanos;
+        private final long bytesWritten;
+
+        private Output(final String path, final String filterPath, final String templatePath, final long nanos, final long bytesWritten) {
+            this.path = path;
+            this.filterPath = filterPath;
+            this.templatePath = templatePath;
+            this.nanos = nanos;
+            this.bytesWritten = bytesWritten;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.google.common.base.Preconditions;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Every key found in any filter numbered with a slot, so each filter's values are held as an
+ * array indexed by slot rather than a map of their own, and each key name is held only once
+ * however many filters define it.
+ *
+ * Keys are only ever added, so slots stay valid for as long as the dictionary is used, keys no
+ * longer in any filter simply having no values. Keys are added while filters are loaded and
+ * the dictionary must not be added to while values are being read.
+ */
+public class KeyDictionary {
+
+    private final Map<String, Integer> slots = new HashMap<String, Integer>();
+    private final List<String> keys = new ArrayList<String>();
+    private int maxKeyLength;
+
+    /**
+     * Slot for the key, or -1 if no filter has defined it.
+     */
+    public int getSlot(final String key) {
+        final Integer slot = slots.get(key);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Slot for each name in turn, -1 for any not defined.
+     */
+    public int[] getSlots(final String[] names) {
+        final int[] result = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            result[i] = getSlot(names[i]);
+        }
+        return result;
+    }
+
+    public String getKey(final int slot) {
+        return keys.get(slot);
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    public int getMaxKeyLength() {
+        return maxKeyLength;
+    }
+
+    /**
+     * Slot for the key, numbering it if new.
+     */
+    public int add(final String key) {
+        Preconditions.checkNotNull(key);
+        Integer slot = slots.get(key);
+        if (slot == null) {
+            slot = keys.size();
+            slots.put(key, slot);
+            keys.add(key);
+            maxKeyLength = Math.max(maxKeyLength, key.length());
+        }
+        return slot;
+    }
+
+    /**
+     * Values held by slot, adding any new keys. Values already held by this dictionary are returned as they are.
+     */
+    public Values toValues(final Map<String, String> values) {
+        if (values instanceof Values && ((Values) values).getDictionary() == this) {
+            return (Values) values;
+        }
+        return new Values(toSlots(values));
+    }
+
+    /**
+     * Array of values indexed by slot, adding any new keys. Must not be modified if the values
+     * are already held by this dictionary, as the array held is returned.
+     */
+    String[] toSlots(final Map<String, String> values) {
+        Preconditions.checkNotNull(values);
+        if (values instanceof Values && ((Values) values).getDictionary() == this) {
+            return ((Values) values).slotValues;
+        }
+        for (final String key : values.keySet()) {
+            add(key);
+        }
+        final String[] slotValues = new String[keys.size()];
+        for (final Map.Entry<String, String> entry : values.entrySet()) {
+            slotValues[slots.get(entry.getKey())] = entry.getValue();
+        }
+        return slotValues;
+    }
+
+    /**
+     * Read only view of values held by slot.
+     */
+    public class Values extends AbstractMap<String, String> {
+        private final String[] slotValues;
+        private final int size;
+
+        Values(final String[] slotValues) {
+            this.slotValues = slotValues;
+            int count = 0;
+            for (final String value : slotValues) {
+                if (value != null) {
+                    count++;
+                }
+            }
+            this.size = count;
+        }
+
+        KeyDictionary getDictionary() {
+            return KeyDictionary.this;
+        }
+
+        @Override
+        public String get(final Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            final int slot = getSlot((String) key);
+            return slot < 0 || slot >= slotValues.length ? null : slotValues[slot];
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Map.Entry<String, String>> entrySet() {
+            return new AbstractSet<Map.Entry<String, String>>() {
+                @Override
+                public Iterator<Map.Entry<String, String>> iterator() {
+                    return new EntryIterator(slotValues);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<String, String>> {
+        private final String[] slotValues;
+        private int next = -1;
+
+        private EntryIterator(final String[] slotValues) {
+            this.slotValues = slotValues;
+            advance();
+        }
+
+        private void advance() {
+            do {
+                next++;
+            } while (next < slotValues.length && slotValues[next] == null);
+        }
+
+        public boolean hasNext() {
+            return next < slotValues.length;
+        }
+
+        public Map.Entry<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Map.Entry<String, String> entry = new AbstractMap.SimpleImmutableEntry<String, String>(keys.get(next), slotValues[next]);
+            advance();
+            return entry;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.ariht.maven.plugins.config.io.FileInfo;
+import com.google.common.base.Preconditions;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Output directory layout planned once per generation: every filter's output directory and
+ * every template's directory below it, so an output path is two lookups and a concatenation
+ * rather than building and normalising the whole path for each template and filter.
+ *
+ * Output is laid out as .../filter-dir/filter-name-no-extension/template-dir/template.name with
+ * unix separators throughout, each distinct directory being created once up front.
+ */
+public class OutputDirectories {
+
+    private static final String PATH_SEPARATOR = "/";
+
+    private final Map<FileInfo, String> filterDirectories = new HashMap<FileInfo, String>();
+    private final Map<FileInfo, String> templateDirectories = new HashMap<FileInfo, String>();
+    private final Set<String> directories = new LinkedHashSet<String>();
+
+    public OutputDirectories(final String outputBasePath, final Collection<FileInfo> filters, final Collection<FileInfo> templates) {
+        Preconditions.checkArgument(StringUtils.isNotBlank(outputBasePath));
+        Preconditions.checkNotNull(filters);
+        Preconditions.checkNotNull(templates);
+        final Set<String> distinctTemplateDirectories = new LinkedHashSet<String>();
+        for (final FileInfo template : templates) {
+            final String templateDirectory = getRelativeDirectory(template.getRelativeSubDirectory());
+            templateDirectories.put(template, templateDirectory);
+            distinctTemplateDirectories.add(templateDirectory);
+        }
+        for (final FileInfo filter : filters) {
+            final String filterDirectory = FilenameUtils.separatorsToUnix(FilenameUtils.normalize(outputBasePath + PATH_SEPARATOR
+                    + filter.getRelativeSubDirectory() + PATH_SEPARATOR
+                    + filter.getNameWithoutExtension() + PATH_SEPARATOR));
+            filterDirectories.put(filter, filterDirectory);
+            for (final String templateDirectory : distinctTemplateDirectories) {
+                directories.add(filterDirectory + templateDirectory);
+            }
+        }
+    }
+
+    /**
+     * Create every output directory that does not already exist.
+     *
+     * @return number of directories created
+     */
+    public int create(final Log log) throws IOException {
+        int created = 0;
+        for (final String directory : directories) {
+            final File outputDir = new File(directory);
+            if (!outputDir.isDirectory()) {
+                log.debug("Creating : " + outputDir);
+                FileUtils.forceMkdir(outputDir);
+                created++;
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Full path, with unix separators, of the output from applying the filter to the template.
+     */
+    public String getOutputFilename(final FileInfo filter, final FileInfo template) {
+        final String filterDirectory = filterDirectories.get(filter);
+        final String templateDirectory = templateDirectories.get(template);
+        Preconditions.checkArgument(filterDirectory != null, "Output directory not planned for filter: %s", filter);
+        Preconditions.checkArgument(templateDirectory != null, "Output directory not planned for template: %s", template);
+        return filterDirectory + templateDirectory + template.getFile().getName();
+    }
+
+    /**
+     * Distinct output directories, with unix separators and a trailing separator.
+     */
+    public Set<String> getDirectories() {
+        return directories;
+    }
+
+    /**
+     * Template's directory below the filter's output directory, empty or ending with a separator.
+     */
+    private static String getRelativeDirectory(final String relativeSubDirectory) {
+        final String normalized = FilenameUtils.separatorsToUnix(FilenameUtils.normalize(relativeSubDirectory + PATH_SEPARATOR));
+        return StringUtils.removeStart(normalized, PATH_SEPARATOR);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.google.common.base.Preconditions;
+import org.apache.commons.configuration.ConfigurationException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parsed filter files and compiled templates shared by every generation in a build, so that
+ * modules (and executions) reading the same shared files only pay to parse them once.
+ *
+ * Entries are keyed by the kind of parsing and the file's canonical path, and only reused
+ * while the file size and modification time are unchanged. Safe for modules built in
+ * parallel: a file requested by several threads at once is parsed by the first, the others
+ * waiting for its result. Values must not be modified once loaded.
+ *
+ * Files are retained until their total size reaches the limit, anything beyond that is parsed
+ * whenever it is requested.
+ */
+public class ReactorCache {
+
+    /**
+     * Parses a file into a value that can be shared.
+     */
+    public interface Loader<T> {
+        T load(File file) throws ConfigurationException, IOException;
+    }
+
+    private static final char KEY_SEPARATOR = '|';
+
+    private long maxSize;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private long size;
+
+    public ReactorCache(final long maxSize) {
+        Preconditions.checkArgument(maxSize >= 0);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Value previously loaded from the file, or loaded now if the file is new or changed.
+     *
+     * @param kind how the file is parsed, including any settings that change the result
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(final String kind, final File file, final Loader<T> loader) throws ConfigurationException, IOException {
+        final String key = kind + KEY_SEPARATOR + file.getCanonicalPath();
+        final long fileSize = file.length();
+        final long lastModified = file.lastModified();
+        while (true) {
+            final Entry current = entries.get(key);
+            if (current != null && current.fileSize == fileSize && current.lastModified == lastModified) {
+                hits.incrementAndGet();
+                return (T) current.get();
+            }
+            final Entry entry = new Entry(fileSize, lastModified, new FutureTask<Object>(new Callable<Object>() {
+                public Object call() throws Exception {
+                    return loader.load(file);
+                }
+            }));
+            final boolean added = current == null ? entries.putIfAbsent(key, entry) == null : entries.replace(key, current, entry);
+            if (!added) {
+                // Another thread is already loading the file
+                continue;
+            }
+            misses.incrementAndGet();
+            entry.task.run();
+            try {
+                final Object value = entry.get();
+                retain(key, current, entry);
+                return (T) value;
+            } catch (ConfigurationException e) {
+                entries.remove(key, entry);
+                throw e;
+            } catch (IOException e) {
+                entries.remove(key, entry);
+                throw e;
+            } catch (RuntimeException e) {
+                entries.remove(key, entry);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Keep the loaded entry if there is room, unless it has already been replaced.
+     */
+    private synchronized void retain(final String key, final Entry staleEntry, final Entry entry) {
+        if (staleEntry != null && staleEntry.retained) {
+            size -= staleEntry.fileSize;
+            staleEntry.retained = false;
+        }
+        if (entries.get(key) != entry) {
+            return;
+        }
+        if (size + entry.fileSize > maxSize) {
+            entries.remove(key, entry);
+        } else {
+            size += entry.fileSize;
+            entry.retained = true;
+        }
+    }
+
+    /**
+     * Raise the limit if it is below maxSize, never lowering it as files already retained stay.
+     */
+    public synchronized void ensureMaxSize(final long maxSize) {
+        this.maxSize = Math.max(this.maxSize, maxSize);
+    }
+
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    private static class Entry {
+        private final long fileSize;
+        private final long lastModified;
+        private final FutureTask<Object> task;
+        private boolean retained;
+
+        private Entry(final long fileSize, final long lastModified, final FutureTask<Object> task) {
+            this.fileSize = fileSize;
+            this.lastModified = lastModified;
+            this.task = task;
+        }
+
+        private Object get() throws ConfigurationException, IOException {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return task.get();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof ConfigurationException) {
+                    throw (ConfigurationException) cause;
+                } else if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Output rendered for one filter reused by every other filter with the same values for the
+ * placeholders the template uses, as the output is then identical. Filters are grouped by
+ * their projection onto the template's placeholders as they are rendered, so a group is
+ * rendered once by whichever filter gets to it first, the rest waiting for its result.
+ *
+ * Lasts for a single generation. Output is retained until its total size reaches the limit,
+ * anything beyond that is rendered for each filter as before.
+ */
+public class SharedRenders {
+
+    /**
+     * Renders a template against one filter's values.
+     */
+    public interface Renderer {
+        Rendered render() throws IOException;
+    }
+
+    private final long maxSize;
+    private final ConcurrentMap<Key, FutureTask<Rendered>> renders = new ConcurrentHashMap<Key, FutureTask<Rendered>>();
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    public SharedRenders(final long maxSize) {
+        Preconditions.checkArgument(maxSize >= 0);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Output already rendered for a filter with the same placeholder values, or rendered now.
+     *
+     * @param templatePath identifies the template, which must be the same for the whole generation
+     */
+    public Rendered get(final String templatePath,
+                        final CompiledTemplate template,
+                        final FilterValues values,
+                        final Renderer renderer) throws IOException {
+        final Key key = new Key(templatePath, template.project(values));
+        final FutureTask<Rendered> task = new FutureTask<Rendered>(new Callable<Rendered>() {
+            public Rendered call() throws Exception {
+                return renderer.render();
+            }
+        });
+        final FutureTask<Rendered> existing = renders.putIfAbsent(key, task);
+        if (existing != null) {
+            hits.incrementAndGet();
+            return get(existing);
+        }
+        misses.incrementAndGet();
+        task.run();
+        try {
+            final Rendered rendered = get(task);
+            if (size.addAndGet(rendered.content.length) > maxSize) {
+                size.addAndGet(-rendered.content.length);
+                renders.remove(key, task);
+            }
+            return rendered;
+        } catch (IOException e) {
+            renders.remove(key, task);
+            throw e;
+        } catch (RuntimeException e) {
+            renders.remove(key, task);
+            throw e;
+        }
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    public long getSize() {
+        return size.get();
+    }
+
+    private static Rendered get(final FutureTask<Rendered> task) throws IOException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Encoded output with the properties it is missing, shared so must not be modified.
+     */
+    public static class Rendered {
+        private final byte[] content;
+        private final Set<String> missingProperties;
+        private final String contentDigest;
+
+        public Rendered(final byte[] content, final Set<String> missingProperties, final String contentDigest) {
+            this.content = content;
+            this.missingProperties = Collections.unmodifiableSet(missingProperties);
+            this.contentDigest = contentDigest;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+
+        public Set<String> getMissingProperties() {
+            return missingProperties;
+        }
+
+        /**
+         * Null unless rendered for a build manifest.
+         */
+        public String getContentDigest() {
+            return contentDigest;
+        }
+    }
+
+    private static class Key {
+        private final String templatePath;
+        private final Object projection;
+        private final int hashCode;
+
+        private Key(final String templatePath, final Object projection) {
+            this.templatePath = templatePath;
+            this.projection = projection;
+            this.hashCode = 31 * templatePath.hashCode() + projection.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return hashCode == other.hashCode && templatePath.equals(other.templatePath) && projection.equals(other.projection);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
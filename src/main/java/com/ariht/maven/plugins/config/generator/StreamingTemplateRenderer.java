@@ -0,0 +1,256 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Set;
+
+/**
+ * Renders a template straight from a reader to a writer through a fixed size buffer, for
+ * templates too large to hold in memory. Produces exactly the same output as compiling the
+ * template with {@link TemplateCompiler} and rendering the result, including placeholders
+ * that straddle buffer boundaries.
+ *
+ * Memory use is bounded by the buffer plus the longest property name: once a placeholder
+ * name grows longer than any key (and the longest name worth reporting) it cannot resolve,
+ * so it is copied through as text and reported missing by the start of its name, exactly as
+ * in memory rendering reports it.
+ */
+public class StreamingTemplateRenderer {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final String prefix;
+    private final String suffix;
+    private final char escape;
+    private final int bufferSize;
+
+    public StreamingTemplateRenderer(final TemplateCompiler templateCompiler) {
+        this(templateCompiler, DEFAULT_BUFFER_SIZE);
+    }
+
+    public StreamingTemplateRenderer(final TemplateCompiler templateCompiler, final int bufferSize) {
+        Preconditions.checkNotNull(templateCompiler);
+        this.prefix = templateCompiler.getPrefix();
+        this.suffix = templateCompiler.getSuffix();
+        this.escape = templateCompiler.getEscape();
+        // Buffer must always be able to hold a whole prefix or suffix for matching
+        this.bufferSize = Math.max(bufferSize, Math.max(prefix.length(), suffix.length()));
+    }
+
+    /**
+     * Substitute placeholders from values while copying reader to writer, adding any
+     * properties that could not be resolved to missingProperties as they are met.
+     */
+    public void render(final Reader reader, final Writer writer, final FilterValues values, final Set<String> missingProperties) throws IOException {
+        final int maxNameLength = Math.max(values.getMaxKeyLength(), FilterValues.MAX_REPORTED_NAME_LENGTH);
+        new Render(reader, writer, values, missingProperties, maxNameLength).run();
+    }
+
+    private class Render {
+        private final Reader reader;
+        private final Writer writer;
+        private final FilterValues values;
+        private final Set<String> missingProperties;
+        private final int maxNameLength;
+        private final char[] buffer = new char[bufferSize];
+        private final StringBuilder name = new StringBuilder();
+        private int pos;
+        private int limit;
+        private boolean endOfInput;
+        // Escape character at the end of the output so far, held back in case a prefix follows
+        private boolean escapePending;
+
+        private Render(final Reader reader,
+                       final Writer writer,
+                       final FilterValues values,
+                       final Set<String> missingProperties,
+                       final int maxNameLength) {
+            this.reader = reader;
+            this.writer = writer;
+            this.values = values;
+            this.missingProperties = missingProperties;
+            this.maxNameLength = maxNameLength;
+        }
+
+        private void run() throws IOException {
+            final char prefixStart = prefix.charAt(0);
+            while (fill(1)) {
+                // Copy literal text up to the next possible prefix in one go
+                int end = pos;
+                while (end < limit && buffer[end] != prefixStart) {
+                    end++;
+                }
+                if (end > pos) {
+                    writeLiteral(pos, end);
+                    pos = end;
+                    continue;
+                }
+                if (!startsWith(prefix)) {
+                    writeLiteral(pos, pos + 1);
+                    pos++;
+                    continue;
+                }
+                if (escapePending) {
+                    // Escaped: drop the escape, prefix is literal text and scanning resumes after its first character
+                    escapePending = false;
+                    writeLiteral(pos, pos + 1);
+                    pos++;
+                    continue;
+                }
+                pos += prefix.length();
+                if (!readPlaceholder()) {
+                    return;
+                }
+            }
+            flushEscape();
+        }
+
+        /**
+         * Read the placeholder name following a prefix, writing the value (or the placeholder unchanged).
+         *
+         * @return false if the input ended before the placeholder was closed
+         */
+        private boolean readPlaceholder() throws IOException {
+            name.setLength(0);
+            while (true) {
+                if (!fill(suffix.length())) {
+                    // Unterminated so nothing further is substituted
+                    flushEscape();
+                    writer.write(prefix);
+                    writer.write(name.toString());
+                    writer.write(buffer, pos, limit - pos);
+                    pos = limit;
+                    return false;
+                }
+                if (startsWith(suffix)) {
+                    pos += suffix.length();
+                    writePlaceholder(name.toString());
+                    return true;
+                }
+                name.append(buffer[pos++]);
+                if (name.length() > maxNameLength) {
+                    return copyUnresolvable();
+                }
+            }
+        }
+
+        /**
+         * Name is longer than any key so cannot be substituted, copy it through to the suffix unchanged.
+         */
+        private boolean copyUnresolvable() throws IOException {
+            flushEscape();
+            final String truncatedName = name.toString();
+            writer.write(prefix);
+            writer.write(truncatedName);
+            name.setLength(0);
+            while (fill(suffix.length())) {
+                if (startsWith(suffix)) {
+                    FilterValues.addMissing(truncatedName, missingProperties);
+                    writeText(suffix);
+                    pos += suffix.length();
+                    return true;
+                }
+                writer.write(buffer[pos++]);
+            }
+            writer.write(buffer, pos, limit - pos);
+            pos = limit;
+            return false;
+        }
+
+        private void writePlaceholder(final String placeholder) throws IOException {
+            flushEscape();
+            final String value = values.resolve(placeholder, missingProperties);
+            if (value == null) {
+                writer.write(prefix);
+                writer.write(placeholder);
+                writeText(suffix);
+            } else {
+                writeText(value);
+            }
+        }
+
+        /**
+         * As for literal text, an escape character ending a value escapes a prefix straight after it.
+         */
+        private void writeText(final String text) throws IOException {
+            flushEscape();
+            if (text.length() > 0 && text.charAt(text.length() - 1) == escape) {
+                writer.write(text, 0, text.length() - 1);
+                escapePending = true;
+            } else {
+                writer.write(text);
+            }
+        }
+
+        private void writeLiteral(final int start, final int end) throws IOException {
+            flushEscape();
+            if (buffer[end - 1] == escape) {
+                writer.write(buffer, start, end - 1 - start);
+                escapePending = true;
+            } else {
+                writer.write(buffer, start, end - start);
+            }
+        }
+
+        private void flushEscape() throws IOException {
+            if (escapePending) {
+                writer.write(escape);
+                escapePending = false;
+            }
+        }
+
+        private boolean startsWith(final String s) throws IOException {
+            if (!fill(s.length())) {
+                return false;
+            }
+            for (int i = 0; i < s.length(); i++) {
+                if (buffer[pos + i] != s.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Make sure at least count characters are buffered, unless the input ends first.
+         */
+        private boolean fill(final int count) throws IOException {
+            if (limit - pos >= count) {
+                return true;
+            }
+            if (pos > 0) {
+                System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+                limit -= pos;
+                pos = 0;
+            }
+            while (limit < count && !endOfInput) {
+                final int read = reader.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    endOfInput = true;
+                } else {
+                    limit += read;
+                }
+            }
+            return limit >= count;
+        }
+    }
+}
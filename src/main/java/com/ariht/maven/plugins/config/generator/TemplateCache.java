@@ -0,0 +1,247 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.ariht.maven.plugins.config.io.BinaryFiles;
+import com.ariht.maven.plugins.config.io.FileInfo;
+import com.google.common.base.Preconditions;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds compiled templates in memory so each template is read from disk once per build rather
+ * than once per filter. Entries are keyed by path and only reused while the file size and
+ * modification time are unchanged.
+ *
+ * Templates are cached until the total size reaches the configured limit, anything beyond
+ * that is re-read from disk whenever it is rendered so very large templates cannot exhaust
+ * the heap. Whether those pass through and which placeholders they reference is still cached,
+ * so each is only read once per render.
+ *
+ * Binary templates, and text templates with no placeholders whose bytes would come out
+ * unchanged, are marked as pass-through so they can be copied rather than rendered. Only that
+ * fact is cached for them, never their content.
+ *
+ * Safe for use by concurrent filter generation, templates are read outside of any lock. Given
+ * a reactor cache, templates compiled by other generations in the build are reused rather
+ * than read again.
+ */
+public class TemplateCache {
+
+    private final Log log;
+    private final TemplateCompiler templateCompiler;
+    private final long maxCacheSize;
+    private final String encoding;
+    private final ReactorCache reactorCache;
+    private static final Map<String, String> NO_VALUES = Collections.emptyMap();
+    private static final Set<String> NO_PLACEHOLDERS = Collections.emptySet();
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    private long cacheSize;
+
+    public TemplateCache(final Log log, final TemplateCompiler templateCompiler, final long maxCacheSize) {
+        this(log, templateCompiler, maxCacheSize, null);
+    }
+
+    /**
+     * @param encoding used to write generated config, platform encoding if blank
+     */
+    public TemplateCache(final Log log, final TemplateCompiler templateCompiler, final long maxCacheSize, final String encoding) {
+        this(log, templateCompiler, maxCacheSize, encoding, null);
+    }
+
+    /**
+     * @param encoding used to write generated config, platform encoding if blank
+     * @param reactorCache templates compiled by other generations in the build, may be null
+     */
+    public TemplateCache(final Log log,
+                         final TemplateCompiler templateCompiler,
+                         final long maxCacheSize,
+                         final String encoding,
+                         final ReactorCache reactorCache) {
+        Preconditions.checkNotNull(log);
+        Preconditions.checkNotNull(templateCompiler);
+        Preconditions.checkArgument(maxCacheSize >= 0);
+        this.log = log;
+        this.templateCompiler = templateCompiler;
+        this.maxCacheSize = maxCacheSize;
+        this.encoding = encoding;
+        this.reactorCache = reactorCache;
+    }
+
+    /**
+     * Read and compile templates up front, as many as fit within the cache limit.
+     */
+    public void load(final List<FileInfo> templates) throws IOException {
+        for (final FileInfo template : templates) {
+            get(template);
+        }
+        log.debug("Cached " + entries.size() + " of " + templates.size() + " templates (" + getCacheSize() + " bytes)");
+    }
+
+    /**
+     * Return the compiled template, from memory if the file is unchanged since it was cached.
+     */
+    public CompiledTemplate get(final FileInfo template) throws IOException {
+        final Entry entry = getEntry(template);
+        if (entry.compiledTemplate == null) {
+            // Pass-through templates are not normally rendered so are never held in memory, nor are those beyond the limit
+            return templateCompiler.compile(FileUtils.readFileToString(template.getFile()));
+        }
+        return entry.compiledTemplate;
+    }
+
+    /**
+     * True if generated output would be byte for byte identical to the template, so the
+     * template can simply be copied.
+     */
+    public boolean isPassThrough(final FileInfo template) throws IOException {
+        return getEntry(template).passThrough;
+    }
+
+    /**
+     * Names of the placeholders the template references, none if it is passed through as it is.
+     */
+    public Set<String> getPlaceholders(final FileInfo template) throws IOException {
+        return new TreeSet<String>(getEntry(template).placeholders);
+    }
+
+    private Entry getEntry(final FileInfo template) throws IOException {
+        final File file = template.getFile();
+        final String path = file.getAbsolutePath();
+        final long size = file.length();
+        final long lastModified = file.lastModified();
+
+        final Entry entry = entries.get(path);
+        if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+            return entry;
+        }
+
+        final Entry newEntry = reactorCache == null ? readEntry(file, size, lastModified) : getSharedEntry(file);
+        cache(path, entry, newEntry);
+        return newEntry;
+    }
+
+    private Entry readEntry(final File file, final long size, final long lastModified) throws IOException {
+        final byte[] content = FileUtils.readFileToByteArray(file);
+        if (BinaryFiles.isBinary(content)) {
+            log.debug("Binary template, will be copied : " + file.getAbsolutePath());
+            return new Entry(size, lastModified, true, null, NO_PLACEHOLDERS);
+        }
+        final String text = new String(content, Charset.defaultCharset());
+        final CompiledTemplate compiledTemplate = templateCompiler.compile(text);
+        if (compiledTemplate.getPlaceholderCount() == 0 && Arrays.equals(content, encode(compiledTemplate.render(NO_VALUES)))) {
+            log.debug("No placeholders in template, will be copied : " + file.getAbsolutePath());
+            return new Entry(size, lastModified, true, null, NO_PLACEHOLDERS);
+        }
+        final Set<String> placeholders = new TreeSet<String>();
+        for (int i = 0; i < compiledTemplate.getPlaceholderCount(); i++) {
+            placeholders.add(compiledTemplate.getPlaceholder(i));
+        }
+        return new Entry(size, lastModified, false, compiledTemplate, Collections.unmodifiableSet(placeholders));
+    }
+
+    /**
+     * Compiled by whichever generation in the build first read the template, keyed by everything
+     * that changes how it compiles or whether it passes through.
+     */
+    private Entry getSharedEntry(final File file) throws IOException {
+        final String kind = "template|" + templateCompiler.getPrefix() + "|" + templateCompiler.getSuffix() + "|"
+                + templateCompiler.getEscape() + "|" + encoding;
+        try {
+            return reactorCache.get(kind, file, new ReactorCache.Loader<Entry>() {
+                public Entry load(final File file) throws IOException {
+                    return readEntry(file, file.length(), file.lastModified());
+                }
+            });
+        } catch (ConfigurationException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private byte[] encode(final String text) throws IOException {
+        return StringUtils.isNotBlank(encoding) ? text.getBytes(encoding) : text.getBytes();
+    }
+
+    private synchronized void cache(final String path, final Entry staleEntry, final Entry entry) {
+        if (staleEntry != null && entries.remove(path, staleEntry)) {
+            cacheSize -= staleEntry.getCachedSize();
+        }
+        if (cacheSize + entry.getCachedSize() > maxCacheSize) {
+            log.debug("Template cache full, will re-read from disk: " + path);
+            entries.putIfAbsent(path, entry.withoutContent());
+        } else if (entries.putIfAbsent(path, entry) == null) {
+            cacheSize += entry.getCachedSize();
+        }
+    }
+
+    /**
+     * True if the template is held in memory rather than re-read to render.
+     */
+    public boolean isCached(final FileInfo template) {
+        final Entry entry = entries.get(template.getFile().getAbsolutePath());
+        return entry != null && (entry.passThrough || entry.compiledTemplate != null);
+    }
+
+    public synchronized long getCacheSize() {
+        return cacheSize;
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long lastModified;
+        private final boolean passThrough;
+        // Null if passed through or too large to hold
+        private final CompiledTemplate compiledTemplate;
+        private final Set<String> placeholders;
+
+        private Entry(final long size,
+                      final long lastModified,
+                      final boolean passThrough,
+                      final CompiledTemplate compiledTemplate,
+                      final Set<String> placeholders) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.passThrough = passThrough;
+            this.compiledTemplate = compiledTemplate;
+            this.placeholders = placeholders;
+        }
+
+        private Entry withoutContent() {
+            return new Entry(size, lastModified, passThrough, null, placeholders);
+        }
+
+        private long getCachedSize() {
+            return compiledTemplate == null ? 0 : size;
+        }
+    }
+}
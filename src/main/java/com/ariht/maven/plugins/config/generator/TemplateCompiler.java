@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.google.common.base.Preconditions;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses template text once into alternating literal and placeholder segments so that
+ * each filter only has to concatenate values rather than re-scan the template.
+ *
+ * Scanning follows the same rules as {@link org.apache.commons.lang.text.StrSubstitutor}:
+ * an escape character immediately before the prefix leaves the placeholder as literal
+ * text (minus the escape) and an unterminated prefix ends placeholder scanning. An escape
+ * at the end of a value rendered for a preceding placeholder counts too, which
+ * {@link CompiledTemplate} checks as it renders.
+ */
+public class TemplateCompiler {
+
+    public static final char DEFAULT_ESCAPE = '$';
+
+    private final String prefix;
+    private final String suffix;
+    private final char escape;
+
+    public TemplateCompiler(final String prefix, final String suffix) {
+        this(prefix, suffix, DEFAULT_ESCAPE);
+    }
+
+    public TemplateCompiler(final String prefix, final String suffix, final char escape) {
+        Preconditions.checkArgument(StringUtils.isNotEmpty(prefix));
+        Preconditions.checkArgument(StringUtils.isNotEmpty(suffix));
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.escape = escape;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    public char getEscape() {
+        return escape;
+    }
+
+    /**
+     * Split template text into literal and placeholder segments.
+     */
+    public CompiledTemplate compile(final String text) {
+        Preconditions.checkNotNull(text);
+        final List<String> literals = new ArrayList<String>();
+        final List<String> placeholders = new ArrayList<String>();
+        final StringBuilder literal = new StringBuilder();
+        final int length = text.length();
+        int pos = 0;
+        int literalStart = 0;
+        while (pos < length) {
+            if (!text.startsWith(prefix, pos)) {
+                pos++;
+                continue;
+            }
+            if (pos > literalStart && text.charAt(pos - 1) == escape) {
+                // Escaped placeholder is kept as text without the escape character
+                literal.append(text, literalStart, pos - 1);
+                literalStart = pos;
+                pos++;
+                continue;
+            }
+            final int nameStart = pos + prefix.length();
+            final int suffixStart = text.indexOf(suffix, nameStart);
+            if (suffixStart < 0) {
+                // No closing suffix so nothing further can be substituted
+                break;
+            }
+            literal.append(text, literalStart, pos);
+            literals.add(literal.toString());
+            literal.setLength(0);
+            placeholders.add(text.substring(nameStart, suffixStart));
+            pos = suffixStart + suffix.length();
+            literalStart = pos;
+        }
+        literal.append(text, literalStart, length);
+        literals.add(literal.toString());
+        return new CompiledTemplate(prefix, suffix, escape,
+                literals.toArray(new String[literals.size()]),
+                placeholders.toArray(new String[placeholders.size()]));
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.io;
+
+import com.google.common.base.Preconditions;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes rendered output on a dedicated thread so rendering carries on while slow file systems
+ * block on writes. Outputs wait in a bounded queue, rendering blocks once it is full, so memory
+ * held by rendered output is limited by the queue size however much is generated.
+ *
+ * The first write to fail stops all further writes and is thrown to whoever next submits
+ * output or finishes. Outputs are written in the order submitted. Anything the writer thread
+ * logs is held and logged by {@link #finish()} so it never interleaves with generation logging.
+ */
+public class AsyncOutputWriter {
+
+    private static final Write END = new Write(null, null, null, null, null, null);
+
+    private final Log log;
+    private final OutputWriter outputWriter;
+    private final BlockingQueue<Write> queue;
+    private final Thread thread;
+    private final AtomicInteger written = new AtomicInteger();
+    private final AtomicInteger unchanged = new AtomicInteger();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private final Queue<String> debugMessages = new ConcurrentLinkedQueue<String>();
+    private volatile IOException failure;
+
+    public AsyncOutputWriter(final Log log, final OutputWriter outputWriter, final int queueSize) {
+        Preconditions.checkNotNull(log);
+        Preconditions.checkNotNull(outputWriter);
+        Preconditions.checkArgument(queueSize > 0);
+        this.log = log;
+        this.outputWriter = outputWriter;
+        this.queue = new ArrayBlockingQueue<Write>(queueSize);
+        this.thread = new Thread(new Runnable() {
+            public void run() {
+                writeQueued();
+            }
+        }, "config-generation-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue content to be written, waiting for space in the queue if it is full.
+     *
+     * @param afterWrite run on the writer thread once the file is written or found unchanged, may be null
+     * @see OutputWriter#write(File, byte[], String, String)
+     */
+    public void write(final File file,
+                      final byte[] content,
+                      final String contentDigest,
+                      final String recordedDigest,
+                      final Runnable afterWrite) throws IOException {
+        put(new Write(file, content, null, contentDigest, recordedDigest, afterWrite));
+    }
+
+    /**
+     * Queue a file to be copied, waiting for space in the queue if it is full.
+     *
+     * @param afterWrite run on the writer thread once the file is copied or found unchanged, may be null
+     * @see OutputWriter#copy(File, File, String, String)
+     */
+    public void copy(final File source,
+                     final File file,
+                     final String contentDigest,
+                     final String recordedDigest,
+                     final Runnable afterWrite) throws IOException {
+        put(new Write(file, null, source, contentDigest, recordedDigest, afterWrite));
+    }
+
+    /**
+     * Wait for every queued output to be written.
+     *
+     * @throws IOException the first write that failed
+     */
+    public void finish() throws IOException {
+        put(END);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            thread.interrupt();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for output to be written");
+        }
+        String message;
+        while ((message = debugMessages.poll()) != null) {
+            log.debug(message);
+        }
+        checkFailure();
+    }
+
+    /**
+     * Stop writing, abandoning anything still queued, when generation has failed.
+     */
+    public void abort() {
+        thread.interrupt();
+    }
+
+    public int getWritten() {
+        return written.get();
+    }
+
+    public int getUnchanged() {
+        return unchanged.get();
+    }
+
+    public long getWriteNanos() {
+        return writeNanos.get();
+    }
+
+    private void put(final Write write) throws IOException {
+        checkFailure();
+        try {
+            queue.put(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting to queue output");
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void writeQueued() {
+        try {
+            while (true) {
+                final Write write = queue.take();
+                if (write == END) {
+                    return;
+                }
+                if (failure == null) {
+                    write(write);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Aborted, anything still queued is abandoned
+        }
+    }
+
+    private void write(final Write write) {
+        final long start = System.nanoTime();
+        try {
+            final boolean changed = write.source == null
+                    ? outputWriter.write(write.file, write.content, write.contentDigest, write.recordedDigest)
+                    : outputWriter.copy(write.source, write.file, write.contentDigest, write.recordedDigest);
+            if (changed) {
+                written.incrementAndGet();
+            } else {
+                if (log.isDebugEnabled()) {
+                    debugMessages.add("Unchanged, not rewritten : " + write.file);
+                }
+                unchanged.incrementAndGet();
+            }
+            if (write.afterWrite != null) {
+                write.afterWrite.run();
+            }
+        } catch (IOException e) {
+            failure = new IOException("Error writing " + write.file + ": " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            failure = new IOException("Error writing " + write.file + ": " + e.getMessage(), e);
+        } finally {
+            writeNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private static class Write {
+        private final File file;
+        private final byte[] content;
+        private final File source;
+        private final String contentDigest;
+        private final String recordedDigest;
+        private final Runnable afterWrite;
+
+        private Write(final File file,
+                      final byte[] content,
+                      final File source,
+                      final String contentDigest,
+                      final String recordedDigest,
+                      final Runnable afterWrite) {
+            this.file = file;
+            this.content = content;
+            this.source = source;
+            this.contentDigest = contentDigest;
+            this.recordedDigest = recordedDigest;
+            this.afterWrite = afterWrite;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.io;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Tells binary files such as keystores, images and archives apart from text templates, the
+ * same way git does: a NUL byte near the start of the file never appears in text.
+ */
+public final class BinaryFiles {
+
+    private static final int SAMPLE_SIZE = 8000;
+
+    private BinaryFiles() {}
+
+    public static boolean isBinary(final byte[] content) {
+        return containsNul(content, Math.min(content.length, SAMPLE_SIZE));
+    }
+
+    /**
+     * Only reads the start of the file.
+     */
+    public static boolean isBinary(final File file) throws IOException {
+        final byte[] sample = new byte[SAMPLE_SIZE];
+        final InputStream in = new FileInputStream(file);
+        try {
+            return containsNul(sample, IOUtils.read(in, sample));
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private static boolean containsNul(final byte[] content, final int length) {
+        for (int i = 0; i < length; i++) {
+            if (content[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
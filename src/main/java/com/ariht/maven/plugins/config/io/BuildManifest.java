@@ -0,0 +1,373 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.io;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the inputs each generated file was created from so the next build only regenerates
+ * outputs whose template, resolved filter values or generation parameters have changed, and
+ * removes outputs whose template or filter no longer exists.
+ *
+ * Alongside each template's digest is the set of placeholders it references, so that an
+ * output's filter digest can cover only the values its template actually uses. A change to a
+ * filter then only regenerates the outputs of templates that reference the changed keys.
+ *
+ * The manifest is deleted as soon as it has been read and only written again once generation
+ * completes, so a failed build always falls back to full regeneration.
+ */
+public class BuildManifest {
+
+    private static final String VERSION = "4";
+    private static final String VERSION_KEY = "manifest.version";
+    private static final String PARAMETERS_KEY = "manifest.parameters";
+    private static final String TEMPLATE_PREFIX = "template.";
+    private static final String OUTPUT_PREFIX = "output.";
+    private static final char FIELD_SEPARATOR = '|';
+    // Placeholder names may contain anything a template author typed, but not a line break
+    private static final char PLACEHOLDER_SEPARATOR = '\n';
+    private static final int TEMPLATE_FIELDS = 5;
+    // Missing properties come last, their names escaped as they may even contain line breaks
+    private static final int OUTPUT_FIELDS = 6;
+
+    private final File file;
+    private final String parametersDigest;
+    private final boolean previousBuildFound;
+    private final Map<String, TemplateRecord> previousTemplates;
+    private final Map<String, OutputRecord> previousOutputs;
+    private final Map<String, TemplateRecord> templates = new ConcurrentHashMap<String, TemplateRecord>();
+    private final Map<String, OutputRecord> outputs = new ConcurrentHashMap<String, OutputRecord>();
+
+    private BuildManifest(final File file,
+                          final String parametersDigest,
+                          final boolean previousBuildFound,
+                          final Map<String, TemplateRecord> previousTemplates,
+                          final Map<String, OutputRecord> previousOutputs) {
+        this.file = file;
+        this.parametersDigest = parametersDigest;
+        this.previousBuildFound = previousBuildFound;
+        this.previousTemplates = previousTemplates;
+        this.previousOutputs = previousOutputs;
+    }
+
+    /**
+     * Load the manifest left by the previous build, if it was created with the same parameters.
+     */
+    public static BuildManifest read(final File file, final String parametersDigest, final Log log) throws IOException {
+        Preconditions.checkNotNull(file);
+        Preconditions.checkNotNull(parametersDigest);
+        final Map<String, TemplateRecord> previousTemplates = new HashMap<String, TemplateRecord>();
+        final Map<String, OutputRecord> previousOutputs = new HashMap<String, OutputRecord>();
+        if (!file.isFile()) {
+            log.debug("No previous build manifest: " + file);
+            return new BuildManifest(file, parametersDigest, false, previousTemplates, previousOutputs);
+        }
+
+        final Properties properties = new Properties();
+        final InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        FileUtils.forceDelete(file);
+
+        if (!VERSION.equals(properties.getProperty(VERSION_KEY)) || !parametersDigest.equals(properties.getProperty(PARAMETERS_KEY))) {
+            log.info("Config generation parameters have changed, regenerating all config");
+            return new BuildManifest(file, parametersDigest, false, previousTemplates, previousOutputs);
+        }
+        try {
+            for (final String key : properties.stringPropertyNames()) {
+                final String value = properties.getProperty(key);
+                if (key.startsWith(TEMPLATE_PREFIX)) {
+                    previousTemplates.put(key.substring(TEMPLATE_PREFIX.length()), TemplateRecord.parse(value));
+                } else if (key.startsWith(OUTPUT_PREFIX)) {
+                    previousOutputs.put(key.substring(OUTPUT_PREFIX.length()), OutputRecord.parse(value));
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Ignoring unreadable build manifest " + file + ": " + String.valueOf(e.getMessage()));
+            previousTemplates.clear();
+            previousOutputs.clear();
+            return new BuildManifest(file, parametersDigest, false, previousTemplates, previousOutputs);
+        }
+        return new BuildManifest(file, parametersDigest, true, previousTemplates, previousOutputs);
+    }
+
+    /**
+     * False when there is nothing usable from a previous build so everything must be regenerated.
+     */
+    public boolean isPreviousBuildFound() {
+        return previousBuildFound;
+    }
+
+    /**
+     * Content digest of a template, only re-reading the template when its size or
+     * modification time differ from the previous build.
+     */
+    public String getTemplateDigest(final File template) throws IOException {
+        final String path = template.getAbsolutePath();
+        final TemplateRecord current = templates.get(path);
+        if (current != null) {
+            return current.digest;
+        }
+        final long size = template.length();
+        final long lastModified = template.lastModified();
+        final TemplateRecord previous = previousTemplates.get(path);
+        final String digest;
+        if (previous != null && previous.size == size && previous.lastModified == lastModified) {
+            digest = previous.digest;
+        } else {
+            digest = Digests.digest(template);
+        }
+        // Content unchanged so the placeholders it references are too
+        final Set<String> placeholders = previous != null && previous.digest.equals(digest) ? previous.placeholders : null;
+        templates.put(path, new TemplateRecord(size, lastModified, digest, placeholders));
+        return digest;
+    }
+
+    /**
+     * Placeholders referenced by a template as recorded for its current content, null if not
+     * yet known. Only valid once {@link #getTemplateDigest(File)} has been called for it.
+     */
+    public Set<String> getTemplatePlaceholders(final File template) {
+        final TemplateRecord current = templates.get(template.getAbsolutePath());
+        return current == null ? null : current.placeholders;
+    }
+
+    /**
+     * Record the placeholders referenced by a template whose digest has already been taken.
+     */
+    public void recordTemplatePlaceholders(final File template, final Set<String> placeholders) {
+        final String path = template.getAbsolutePath();
+        final TemplateRecord current = templates.get(path);
+        Preconditions.checkState(current != null, "Template digest not yet taken: " + path);
+        for (final String placeholder : placeholders) {
+            if (placeholder.isEmpty() || placeholder.indexOf(PLACEHOLDER_SEPARATOR) >= 0) {
+                // Could not be read back so never recorded, dependent outputs use every filter value instead
+                return;
+            }
+        }
+        templates.put(path, new TemplateRecord(current.size, current.lastModified, current.digest,
+                Collections.unmodifiableSet(new TreeSet<String>(placeholders))));
+    }
+
+    /**
+     * Output exists and was generated from the same template and filter values last time.
+     */
+    public boolean isUpToDate(final String outputFilename, final String templateDigest, final String filterDigest) {
+        final OutputRecord previous = previousOutputs.get(outputFilename);
+        return previous != null
+                && previous.templateDigest.equals(templateDigest)
+                && previous.filterDigest.equals(filterDigest)
+                && new File(outputFilename).isFile();
+    }
+
+    /**
+     * Carry forward the previous record of an up to date output, returning the missing
+     * properties found when it was generated.
+     */
+    public Set<String> reuse(final String outputFilename) {
+        final OutputRecord previous = previousOutputs.get(outputFilename);
+        if (previous == null) {
+            return Collections.emptySet();
+        }
+        outputs.put(outputFilename, previous);
+        return previous.missingProperties;
+    }
+
+    /**
+     * Digest of the output's content as last written, only if it appears untouched since.
+     */
+    public String getRecordedOutputDigest(final String outputFilename) {
+        final OutputRecord previous = previousOutputs.get(outputFilename);
+        if (previous == null || StringUtils.isEmpty(previous.outputDigest)) {
+            return null;
+        }
+        final File outputFile = new File(outputFilename);
+        if (outputFile.length() != previous.outputSize || outputFile.lastModified() != previous.outputLastModified) {
+            return null;
+        }
+        return previous.outputDigest;
+    }
+
+    public void record(final String outputFilename,
+                       final String templateDigest,
+                       final String filterDigest,
+                       final Set<String> missingProperties,
+                       final String outputDigest) {
+        final File outputFile = new File(outputFilename);
+        outputs.put(outputFilename, new OutputRecord(templateDigest, filterDigest, new LinkedHashSet<String>(missingProperties),
+                StringUtils.defaultString(outputDigest), outputFile.length(), outputFile.lastModified()));
+    }
+
+    /**
+     * Outputs generated last time that have not been generated (or reused) by this build.
+     */
+    public List<String> getRemovedOutputs() {
+        final List<String> removed = new ArrayList<String>();
+        for (final String outputFilename : previousOutputs.keySet()) {
+            if (!outputs.containsKey(outputFilename)) {
+                removed.add(outputFilename);
+            }
+        }
+        Collections.sort(removed);
+        return removed;
+    }
+
+    public void write() throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty(VERSION_KEY, VERSION);
+        properties.setProperty(PARAMETERS_KEY, parametersDigest);
+        for (final Map.Entry<String, TemplateRecord> entry : templates.entrySet()) {
+            properties.setProperty(TEMPLATE_PREFIX + entry.getKey(), entry.getValue().format());
+        }
+        for (final Map.Entry<String, OutputRecord> entry : outputs.entrySet()) {
+            properties.setProperty(OUTPUT_PREFIX + entry.getKey(), entry.getValue().format());
+        }
+        FileUtils.forceMkdir(file.getAbsoluteFile().getParentFile());
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            properties.store(out, "config-generation-maven-plugin build manifest");
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    private static List<String> split(final String value, final char separator) {
+        return Lists.newArrayList(Splitter.on(separator).split(value));
+    }
+
+    private static String unescape(final String escaped) {
+        final StringBuilder sb = new StringBuilder(escaped.length());
+        for (int i = 0; i < escaped.length(); i++) {
+            final char c = escaped.charAt(i);
+            if (c == '\\' && i + 1 < escaped.length()) {
+                final char next = escaped.charAt(++i);
+                sb.append(next == 'n' ? '\n' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static class TemplateRecord {
+        private final long size;
+        private final long lastModified;
+        private final String digest;
+        // Null when not known
+        private final Set<String> placeholders;
+
+        private TemplateRecord(final long size, final long lastModified, final String digest, final Set<String> placeholders) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.digest = digest;
+            this.placeholders = placeholders;
+        }
+
+        private String format() {
+            return Joiner.on(FIELD_SEPARATOR).join(size, lastModified, digest, placeholders != null,
+                    placeholders == null ? "" : Joiner.on(PLACEHOLDER_SEPARATOR).join(placeholders));
+        }
+
+        private static TemplateRecord parse(final String value) {
+            final List<String> fields = Lists.newArrayList(Splitter.on(FIELD_SEPARATOR).limit(TEMPLATE_FIELDS).split(value));
+            Set<String> placeholders = null;
+            if (Boolean.parseBoolean(fields.get(3))) {
+                placeholders = new TreeSet<String>();
+                if (StringUtils.isNotEmpty(fields.get(4))) {
+                    placeholders.addAll(split(fields.get(4), PLACEHOLDER_SEPARATOR));
+                }
+                placeholders = Collections.unmodifiableSet(placeholders);
+            }
+            return new TemplateRecord(Long.parseLong(fields.get(0)), Long.parseLong(fields.get(1)), fields.get(2), placeholders);
+        }
+    }
+
+    private static class OutputRecord {
+        private final String templateDigest;
+        private final String filterDigest;
+        private final Set<String> missingProperties;
+        private final String outputDigest;
+        private final long outputSize;
+        private final long outputLastModified;
+
+        private OutputRecord(final String templateDigest,
+                             final String filterDigest,
+                             final Set<String> missingProperties,
+                             final String outputDigest,
+                             final long outputSize,
+                             final long outputLastModified) {
+            this.templateDigest = templateDigest;
+            this.filterDigest = filterDigest;
+            this.missingProperties = missingProperties;
+            this.outputDigest = outputDigest;
+            this.outputSize = outputSize;
+            this.outputLastModified = outputLastModified;
+        }
+
+        private String format() {
+            final List<String> escapedNames = new ArrayList<String>(missingProperties.size());
+            for (final String missingProperty : missingProperties) {
+                escapedNames.add(missingProperty.replace("\\", "\\\\").replace("\n", "\\n"));
+            }
+            return Joiner.on(FIELD_SEPARATOR).join(templateDigest, filterDigest, outputDigest, outputSize, outputLastModified,
+                    Joiner.on(PLACEHOLDER_SEPARATOR).join(escapedNames));
+        }
+
+        private static OutputRecord parse(final String value) {
+            final List<String> fields = Lists.newArrayList(Splitter.on(FIELD_SEPARATOR).limit(OUTPUT_FIELDS).split(value));
+            final Set<String> missingProperties = new LinkedHashSet<String>();
+            if (StringUtils.isNotEmpty(fields.get(5))) {
+                for (final String escapedName : split(fields.get(5), PLACEHOLDER_SEPARATOR)) {
+                    missingProperties.add(unescape(escapedName));
+                }
+            }
+            return new OutputRecord(fields.get(0), fields.get(1), missingProperties, fields.get(2),
+                    Long.parseLong(fields.get(3)), Long.parseLong(fields.get(4)));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.io;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Content fingerprints used to decide whether generated output is still current. These are
+ * change detection hashes only, not for anything security related.
+ */
+public final class Digests {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private Digests() {}
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is a required JVM algorithm", e);
+        }
+    }
+
+    public static String digest(final byte[] bytes) {
+        return toHex(newDigest().digest(bytes));
+    }
+
+    public static String digest(final String text) {
+        return digest(text.getBytes(Charsets.UTF_8));
+    }
+
+    public static String digest(final File file) throws IOException {
+        final MessageDigest digest = newDigest();
+        final InputStream in = new FileInputStream(file);
+        try {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Digest of key/value pairs independent of map iteration order.
+     */
+    public static String digest(final Map<String, String> values) {
+        final MessageDigest digest = newDigest();
+        for (final Map.Entry<String, String> entry : new TreeMap<String, String>(values).entrySet()) {
+            digest.update(entry.getKey().getBytes(Charsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(entry.getValue()).getBytes(Charsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return toHex(digest.digest());
+    }
+
+    public static String toHex(final byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -17,11 +17,13 @@
 package com.ariht.maven.plugins.config.io;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Set;
 
 public class DirectoryDeleter {
 
@@ -42,4 +44,46 @@ public class DirectoryDeleter {
         }
     }
 
+    /**
+     * Remove files from a previous build that were not generated this time, leaving generated
+     * files untouched, then remove any directories left empty.
+     *
+     * @param generatedFiles normalised, unix separated paths of every file generated by this build
+     * @return number of files deleted
+     */
+    public int deleteFilesNotGenerated(final String outputBasePath, final Set<String> generatedFiles, final Log logger) throws MojoFailureException {
+        final File outputDir = new File(outputBasePath);
+        if (!outputDir.isDirectory()) {
+            return 0;
+        }
+        int deleted = 0;
+        for (final File file : FileUtils.listFiles(outputDir, null, true)) {
+            final String filename = FilenameUtils.separatorsToUnix(FilenameUtils.normalize(file.getPath()));
+            if (!generatedFiles.contains(filename)) {
+                logger.debug("Deleting : " + file);
+                if (!file.delete()) {
+                    throw new MojoFailureException("Unable to delete previously generated file: " + file);
+                }
+                deleted++;
+            }
+        }
+        deleteEmptyDirectories(outputDir, logger);
+        return deleted;
+    }
+
+    private boolean deleteEmptyDirectories(final File directory, final Log logger) {
+        final File[] children = directory.listFiles();
+        boolean empty = true;
+        if (children != null) {
+            for (final File child : children) {
+                if (!child.isDirectory() || !deleteEmptyDirectories(child, logger) || !child.delete()) {
+                    empty = false;
+                } else {
+                    logger.debug("Deleting : " + child);
+                }
+            }
+        }
+        return empty;
+    }
+
 }
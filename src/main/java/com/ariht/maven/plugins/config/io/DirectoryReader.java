@@ -16,30 +16,44 @@
 
 package com.ariht.maven.plugins.config.io;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.filefilter.DirectoryFileFilter;
-import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.maven.plugin.logging.Log;
+
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
+import java.util.EnumSet;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
  * Reads directory recursively to create collated file information containing relative
  * paths, name (without extension) and a reference to the {@link File} itself.
+ *
+ * Files and directories to ignore are either paths, which exclude that file or everything
+ * beneath that directory, or patterns prefixed {@code glob:} or {@code regex:} as understood
+ * by {@link java.nio.file.FileSystem#getPathMatcher(String)}, matched against the path relative
+ * to the directory being read. Ignored directories are never descended into.
+ *
+ * Files to include are glob patterns (or patterns prefixed {@code glob:} or {@code regex:}) also
+ * matched against the relative path, either with or without the file's extension. When given
+ * only files matching at least one of them are read, none if there are none.
  */
 public class DirectoryReader {
 
+    private static final String GLOB_SYNTAX = "glob:";
+    private static final String REGEX_SYNTAX = "regex:";
+
     private final Log log;
-    private final List<File> EMPTY_FILE_LIST = Collections.unmodifiableList(new LinkedList<File>());
 
     public DirectoryReader(final Log log) {
         this.log = log;
@@ -49,87 +63,161 @@ public class DirectoryReader {
      * Read directory creating FileInfo for each file found, include sub-directories.
      */
     public List<FileInfo> readFiles(final String path, final List<String> filesAndDirectoriesToIgnore) throws IOException, InstantiationException, IllegalAccessException {
-        final List<File> filesToIgnore = convertStringsToFiles(filesAndDirectoriesToIgnore);
-        log.debug("Scanning directory: " + path);
-        final File directory = new File(path);
-        final Collection<File> allFiles = getAllFiles(directory, filesToIgnore);
-        if (allFiles.isEmpty()) {
-            log.warn("No files found in directory: " + path);
-        }
-        final List<FileInfo> allFilesInfo = new ArrayList<FileInfo>(allFiles.size());
-        final String canonicalBaseDirectory = directory.getCanonicalPath();
-        for (final File file : allFiles) {
-            final FileInfo fileInfo = new FileInfo(log, file);
-            // Remove base directory to derive sub-directory
-            final String canonicalFilePath = FilenameUtils.getFullPathNoEndSeparator(file.getCanonicalPath());
-            final String subDirectory = FilenameUtils.normalize(StringUtils.replaceOnce(canonicalFilePath, canonicalBaseDirectory, ""));
-            fileInfo.setRelativeSubDirectory(subDirectory);
-            allFilesInfo.add(fileInfo);
-        }
-        return allFilesInfo;
+        return readFiles(path, filesAndDirectoriesToIgnore, null);
     }
 
     /**
-     * Return collection of all files in directory and sub-directories, ignoring any that
-     * have been specifically excluded in plugin configuration.
+     * Read directory creating FileInfo for each file found that is included, include sub-directories.
+     *
+     * @param filesToInclude patterns selecting the files to read, everything if null or empty
      */
-    @SuppressWarnings("rawtypes")
-    private Collection<File> getAllFiles(final File directory, final List<File> filesToIgnore) {
+    public List<FileInfo> readFiles(final String path,
+                                    final List<String> filesAndDirectoriesToIgnore,
+                                    final List<String> filesToInclude) throws IOException, InstantiationException, IllegalAccessException {
+        log.debug("Scanning directory: " + path);
+        final File directory = new File(path);
         if (!directory.exists()) {
             log.warn("Directory does not exist: " + directory.getPath());
-            return EMPTY_FILE_LIST;
+            log.warn("No files found in directory: " + path);
+            return new ArrayList<FileInfo>();
         }
-        final Collection allFiles = FileUtils.listFiles(directory, TrueFileFilter.TRUE, DirectoryFileFilter.DIRECTORY);
-        final Collection<File> files = new ArrayList<File>(allFiles.size());
-        for (final Object o : allFiles) {
-            if (o != null && o instanceof File) {
-                final File file = (File) o;
-                if (isFileToIgnore(file, filesToIgnore)) {
-                    log.debug("Ignoring : " + file.toString());
+        // Canonicalised once, everything found beneath it is then relative to the same base
+        final Path baseDirectory = directory.getCanonicalFile().toPath();
+        final Ignores ignores = new Ignores(baseDirectory, filesAndDirectoriesToIgnore);
+        final Includes includes = new Includes(baseDirectory, filesToInclude);
+        final List<FileInfo> allFilesInfo = new ArrayList<FileInfo>();
+        Files.walkFileTree(baseDirectory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attributes) {
+                if (!dir.equals(baseDirectory) && ignores.isIgnored(dir)) {
+                    log.debug("Ignoring : " + dir);
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+                if (ignores.isIgnored(file)) {
+                    log.debug("Ignoring : " + file);
+                } else if (!includes.isIncluded(file)) {
+                    log.debug("Not included : " + file);
                 } else {
-                    log.debug("Adding file: " + file.toString());
-                    files.add(file);
+                    log.debug("Adding file: " + file);
+                    allFilesInfo.add(createFileInfo(baseDirectory, file));
                 }
-            } else {
-                log.warn("Not a file: " + ToStringBuilder.reflectionToString(o));
+                return FileVisitResult.CONTINUE;
             }
+
+            @Override
+            public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+                log.warn("Unable to read, skipping: " + file + " (" + e.getMessage() + ")");
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        if (allFilesInfo.isEmpty()) {
+            log.warn("No files found in directory: " + path);
         }
-        return files;
+        return allFilesInfo;
     }
 
     /**
-     * Has a directory or specific file been excluded from config generation?
+     * Sub-directory is the file's parent relative to the base directory, empty at the top level.
      */
-    private boolean isFileToIgnore(final File file, final List<File> filesToIgnore) {
-        for (File f : filesToIgnore) {
-            if (StringUtils.startsWith(file.getAbsolutePath(), f.getAbsolutePath())) {
-                log.debug("Matched prefix so will ignore: \n" + file.getAbsolutePath() + "\n" + f.getAbsolutePath());
-                return true;
+    private FileInfo createFileInfo(final Path baseDirectory, final Path file) {
+        final FileInfo fileInfo = new FileInfo(log, file.toFile());
+        final Path parent = file.getParent();
+        fileInfo.setRelativeSubDirectory(parent.equals(baseDirectory) ? "" : File.separator + baseDirectory.relativize(parent));
+        return fileInfo;
+    }
+
+    /**
+     * Paths and patterns to ignore, resolved and compiled once per directory read.
+     */
+    private class Ignores {
+        private final Path baseDirectory;
+        private final List<Path> paths = new ArrayList<Path>();
+        private final List<PathMatcher> matchers = new ArrayList<PathMatcher>();
+
+        private Ignores(final Path baseDirectory, final List<String> filesAndDirectoriesToIgnore) throws IOException {
+            this.baseDirectory = baseDirectory;
+            if (filesAndDirectoriesToIgnore == null) {
+                return;
+            }
+            for (final String ignore : new LinkedHashSet<String>(filesAndDirectoriesToIgnore)) {
+                if (StringUtils.isBlank(ignore)) {
+                    continue;
+                }
+                final String trimmed = ignore.trim();
+                if (trimmed.startsWith(GLOB_SYNTAX) || trimmed.startsWith(REGEX_SYNTAX)) {
+                    log.debug("Adding ignore for pattern: " + trimmed);
+                    matchers.add(FileSystems.getDefault().getPathMatcher(trimmed));
+                } else {
+                    final File file = new File(FilenameUtils.separatorsToUnix(FilenameUtils.normalize(trimmed)));
+                    if (file.exists()) {
+                        log.debug("Adding ignore for file: " + file.getAbsolutePath());
+                        paths.add(file.getCanonicalFile().toPath());
+                    }
+                }
+            }
+        }
+
+        /**
+         * Has a directory or specific file been excluded from config generation?
+         */
+        private boolean isIgnored(final Path path) {
+            for (final Path ignoredPath : paths) {
+                if (path.startsWith(ignoredPath)) {
+                    return true;
+                }
+            }
+            if (!matchers.isEmpty()) {
+                final Path relativePath = baseDirectory.relativize(path);
+                for (final PathMatcher matcher : matchers) {
+                    if (matcher.matches(relativePath)) {
+                        return true;
+                    }
+                }
             }
+            return false;
         }
-        return false;
     }
 
     /**
-     * Directories and/or specific files you do not wish to include in config generation
-     * are converted from String to File instances.
+     * Patterns selecting which files are read, all of them when there are none.
      */
-    private List<File> convertStringsToFiles(final List<String> filesToIgnore) {
-        if (filesToIgnore == null || filesToIgnore.isEmpty()) {
-            return EMPTY_FILE_LIST;
+    private class Includes {
+        private final Path baseDirectory;
+        private final List<PathMatcher> matchers = new ArrayList<PathMatcher>();
+
+        private Includes(final Path baseDirectory, final List<String> filesToInclude) {
+            this.baseDirectory = baseDirectory;
+            if (filesToInclude == null) {
+                return;
+            }
+            for (final String include : new LinkedHashSet<String>(filesToInclude)) {
+                if (StringUtils.isBlank(include)) {
+                    continue;
+                }
+                final String trimmed = include.trim();
+                final String pattern = trimmed.startsWith(GLOB_SYNTAX) || trimmed.startsWith(REGEX_SYNTAX) ? trimmed : GLOB_SYNTAX + trimmed;
+                log.debug("Adding include for pattern: " + pattern);
+                matchers.add(FileSystems.getDefault().getPathMatcher(pattern));
+            }
         }
-        final List<File> filesIgnored = new ArrayList<File>(filesToIgnore.size());
-        for (String fileToIgnore : new LinkedHashSet<String>(filesToIgnore)) {
-            if (StringUtils.isNotBlank(fileToIgnore)) {
-                fileToIgnore = FilenameUtils.separatorsToUnix(FilenameUtils.normalize(fileToIgnore.trim()));
-                final File file = new File(fileToIgnore);
-                if (file.exists()) {
-                    log.debug("Adding ignore for file: " + file.getAbsolutePath());
-                    filesIgnored.add(file);
+
+        private boolean isIncluded(final Path file) {
+            if (matchers.isEmpty()) {
+                return true;
+            }
+            final Path relativePath = baseDirectory.relativize(file);
+            final Path withoutExtension = relativePath.resolveSibling(FilenameUtils.removeExtension(relativePath.getFileName().toString()));
+            for (final PathMatcher matcher : matchers) {
+                if (matcher.matches(relativePath) || matcher.matches(withoutExtension)) {
+                    return true;
                 }
             }
+            return false;
         }
-        return filesIgnored;
     }
-
 }
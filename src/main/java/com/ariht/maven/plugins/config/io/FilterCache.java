@@ -0,0 +1,338 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.io;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Each filter's parsed values kept on disk between builds so that unchanged filters need not
+ * be parsed again. Entries are keyed by the filter's path and only used while the digest of
+ * the content (and paths) of the filter and its external files is unchanged.
+ *
+ * The file is read into memory in one go, only the index is decoded up front and an entry's
+ * values only when it is found to be current. It is read rather than memory-mapped as a
+ * mapping is only released when collected, and until then Windows will not replace the file.
+ * A file that is truncated, fails its checksum, was written by another version or with other
+ * settings is ignored, every filter then being parsed as normal.
+ *
+ * Layout: magic, version, settings digest, entry count, then for each entry its filter path,
+ * files digest, value count and keys and values, ending with a CRC32 of everything before it.
+ * Strings are written as a byte length followed by UTF-8.
+ *
+ * Not thread safe, filters are loaded by a single thread.
+ */
+public class FilterCache {
+
+    private static final int MAGIC = 0x43474643;
+    private static final int VERSION = 2;
+    private static final int CHECKSUM_LENGTH = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+
+    private final File file;
+    private final String settingsDigest;
+    private final ByteBuffer previousBuffer;
+    // Offset of each previous entry's values in the buffer, by filter path
+    private final Map<String, PreviousEntry> previousEntries;
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    private int hits;
+    private int misses;
+
+    private FilterCache(final File file,
+                        final String settingsDigest,
+                        final ByteBuffer previousBuffer,
+                        final Map<String, PreviousEntry> previousEntries) {
+        this.file = file;
+        this.settingsDigest = settingsDigest;
+        this.previousBuffer = previousBuffer;
+        this.previousEntries = previousEntries;
+    }
+
+    /**
+     * Read the cache left by a previous build, empty if there is none or it cannot be used.
+     *
+     * @param settingsDigest digest of every setting that changes how filters are parsed
+     */
+    public static FilterCache read(final File file, final String settingsDigest, final Log log) throws IOException {
+        Preconditions.checkNotNull(file);
+        Preconditions.checkNotNull(settingsDigest);
+        final Map<String, PreviousEntry> noEntries = Collections.emptyMap();
+        if (!file.isFile()) {
+            log.debug("No filter cache: " + file);
+            return new FilterCache(file, settingsDigest, null, noEntries);
+        }
+        try {
+            final ByteBuffer buffer = readFully(file);
+            final Map<String, PreviousEntry> previousEntries = readIndex(buffer, settingsDigest);
+            if (previousEntries == null) {
+                log.info("Filter cache was written by another version or with other settings, parsing all filters");
+                return new FilterCache(file, settingsDigest, null, noEntries);
+            }
+            log.debug("Filter cache : " + previousEntries.size() + " filters in " + file);
+            return new FilterCache(file, settingsDigest, buffer, previousEntries);
+        } catch (BufferUnderflowException e) {
+            log.warn("Ignoring truncated filter cache " + file);
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring unreadable filter cache " + file + ": " + String.valueOf(e.getMessage()));
+        }
+        return new FilterCache(file, settingsDigest, null, noEntries);
+    }
+
+    /**
+     * Digest of the content and paths of a filter's files, in order.
+     */
+    public static String digest(final List<File> files) throws IOException {
+        final MessageDigest digest = Digests.newDigest();
+        for (final File file : files) {
+            digest.update(file.getAbsolutePath().getBytes(Charsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Digests.digest(file).getBytes(Charsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return Digests.toHex(digest.digest());
+    }
+
+    /**
+     * Values cached for the filter, or null if there are none for these files.
+     */
+    public Map<String, String> get(final String filterPath, final String filesDigest) {
+        final Entry entry = entries.get(filterPath);
+        if (entry != null && entry.filesDigest.equals(filesDigest)) {
+            hits++;
+            return entry.values;
+        }
+        final PreviousEntry previousEntry = previousEntries.get(filterPath);
+        if (previousEntry == null || !previousEntry.filesDigest.equals(filesDigest)) {
+            return null;
+        }
+        final Map<String, String> values = readValues(previousEntry);
+        entries.put(filterPath, new Entry(filesDigest, values));
+        hits++;
+        return values;
+    }
+
+    /**
+     * Record values just parsed, written with the rest of the cache.
+     */
+    public void put(final String filterPath, final String filesDigest, final Map<String, String> values) {
+        entries.put(filterPath, new Entry(filesDigest, values));
+        misses++;
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Write the cache for the given filters if anything has changed, filters not read this time
+     * keeping their previous entries. Written to a temporary file then moved into place so a
+     * failed write never leaves a partial cache.
+     */
+    public void write(final Collection<String> filterPaths, final Log log) throws IOException {
+        if (misses == 0 && previousEntries.keySet().equals(new HashSet<String>(filterPaths))) {
+            log.debug("Filter cache unchanged: " + file);
+            return;
+        }
+        final Map<String, Entry> toWrite = new LinkedHashMap<String, Entry>();
+        for (final String filterPath : filterPaths) {
+            Entry entry = entries.get(filterPath);
+            final PreviousEntry previousEntry = previousEntries.get(filterPath);
+            if (entry == null && previousEntry != null) {
+                entry = new Entry(previousEntry.filesDigest, readValues(previousEntry));
+            }
+            if (entry != null) {
+                toWrite.put(filterPath, entry);
+            }
+        }
+        FileUtils.forceMkdir(file.getAbsoluteFile().getParentFile());
+        final File temporaryFile = new File(file.getPath() + TEMPORARY_FILE_EXTENSION);
+        try {
+            final CRC32 crc = new CRC32();
+            final FileOutputStream fileOut = new FileOutputStream(temporaryFile);
+            try {
+                final DataOutputStream out = new DataOutputStream(
+                        new CheckedOutputStream(new BufferedOutputStream(fileOut, BUFFER_SIZE), crc));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, settingsDigest);
+                out.writeInt(toWrite.size());
+                for (final Map.Entry<String, Entry> entry : toWrite.entrySet()) {
+                    writeString(out, entry.getKey());
+                    writeString(out, entry.getValue().filesDigest);
+                    out.writeInt(entry.getValue().values.size());
+                    for (final Map.Entry<String, String> value : entry.getValue().values.entrySet()) {
+                        writeString(out, value.getKey());
+                        writeString(out, value.getValue());
+                    }
+                }
+                out.flush();
+                // Checksum of everything before it, so not itself checksummed
+                new DataOutputStream(fileOut).writeLong(crc.getValue());
+                fileOut.close();
+            } finally {
+                IOUtils.closeQuietly(fileOut);
+            }
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            log.debug("Filter cache written: " + toWrite.size() + " filters to " + file);
+        } finally {
+            FileUtils.deleteQuietly(temporaryFile);
+        }
+    }
+
+    private static ByteBuffer readFully(final File file) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            final long size = channel.size();
+            Preconditions.checkArgument(size <= Integer.MAX_VALUE, "too large");
+            final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Read until full or the file ends early, which then reads as truncated
+            }
+            buffer.flip();
+            return buffer;
+        } finally {
+            IOUtils.closeQuietly(randomAccessFile);
+        }
+    }
+
+    /**
+     * Offsets of each entry's values, null if the cache does not match this version and settings.
+     */
+    private static Map<String, PreviousEntry> readIndex(final ByteBuffer buffer, final String settingsDigest) {
+        if (buffer.remaining() < 2 * 4 + CHECKSUM_LENGTH || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        final int contentLength = buffer.limit() - CHECKSUM_LENGTH;
+        Preconditions.checkArgument(buffer.getLong(contentLength) == checksum(buffer, contentLength),
+                "checksum does not match");
+        if (!settingsDigest.equals(readString(buffer))) {
+            return null;
+        }
+        final int count = buffer.getInt();
+        Preconditions.checkArgument(count >= 0, "negative entry count");
+        final Map<String, PreviousEntry> previousEntries = new HashMap<String, PreviousEntry>();
+        for (int i = 0; i < count; i++) {
+            final String filterPath = readString(buffer);
+            final String filesDigest = readString(buffer);
+            previousEntries.put(filterPath, new PreviousEntry(filesDigest, buffer.position()));
+            final int values = buffer.getInt();
+            Preconditions.checkArgument(values >= 0, "negative value count");
+            for (int j = 0; j < values * 2; j++) {
+                skipString(buffer);
+            }
+        }
+        Preconditions.checkArgument(buffer.position() == contentLength, "unexpected data after entries");
+        return previousEntries;
+    }
+
+    private static long checksum(final ByteBuffer buffer, final int length) {
+        final ByteBuffer content = buffer.duplicate();
+        content.clear();
+        final CRC32 crc = new CRC32();
+        final byte[] bytes = new byte[BUFFER_SIZE];
+        int remaining = length;
+        while (remaining > 0) {
+            final int chunk = Math.min(bytes.length, remaining);
+            content.get(bytes, 0, chunk);
+            crc.update(bytes, 0, chunk);
+            remaining -= chunk;
+        }
+        return crc.getValue();
+    }
+
+    private Map<String, String> readValues(final PreviousEntry previousEntry) {
+        final ByteBuffer buffer = previousBuffer.duplicate();
+        buffer.position(previousEntry.valuesOffset);
+        final int count = buffer.getInt();
+        final Map<String, String> values = new HashMap<String, String>(count * 2);
+        for (int i = 0; i < count; i++) {
+            values.put(readString(buffer), readString(buffer));
+        }
+        return Collections.unmodifiableMap(values);
+    }
+
+    private static void writeString(final DataOutputStream out, final String s) throws IOException {
+        final byte[] bytes = s.getBytes(Charsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        Preconditions.checkArgument(length >= 0 && length <= buffer.remaining(), "invalid string length");
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+    private static void skipString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        Preconditions.checkArgument(length >= 0 && length <= buffer.remaining(), "invalid string length");
+        buffer.position(buffer.position() + length);
+    }
+
+    private static class PreviousEntry {
+        private final String filesDigest;
+        private final int valuesOffset;
+
+        private PreviousEntry(final String filesDigest, final int valuesOffset) {
+            this.filesDigest = filesDigest;
+            this.valuesOffset = valuesOffset;
+        }
+    }
+
+    private static class Entry {
+        private final String filesDigest;
+        private final Map<String, String> values;
+
+        private Entry(final String filesDigest, final Map<String, String> values) {
+            this.filesDigest = filesDigest;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.io;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes generated config, optionally leaving files untouched (content and modification time)
+ * when what is already on disk is byte for byte identical, so downstream packaging and
+ * deployment only see files that really changed.
+ */
+public class OutputWriter {
+
+    private final boolean skipUnchanged;
+
+    public OutputWriter(final boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    /**
+     * Write content to file unless skipping unchanged files and the file already holds it.
+     *
+     * @param contentDigest digest of content, only needed along with recordedDigest
+     * @param recordedDigest digest of the file as last written, if known and the file has not changed since
+     * @return true if the file was written, false if it was left as it was
+     */
+    public boolean write(final File file, final byte[] content, final String contentDigest, final String recordedDigest) throws IOException {
+        if (skipUnchanged && isUnchanged(file, content, contentDigest, recordedDigest)) {
+            return false;
+        }
+        FileUtils.writeByteArrayToFile(file, content);
+        return true;
+    }
+
+    /**
+     * Copy a file whose content is already exactly what should be generated, unless skipping
+     * unchanged files and the file already holds it.
+     *
+     * @return true if the file was written, false if it was left as it was
+     */
+    public boolean copy(final File source, final File file, final String contentDigest, final String recordedDigest) throws IOException {
+        if (skipUnchanged && isUnchanged(file, source, contentDigest, recordedDigest)) {
+            return false;
+        }
+        Files.copy(source.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    /**
+     * Move content already written to a temporary file into place, or discard it if skipping
+     * unchanged files and the file already holds it.
+     *
+     * @return true if the file was replaced, false if it was left as it was
+     */
+    public boolean commit(final File temporaryFile, final File file, final String contentDigest, final String recordedDigest) throws IOException {
+        if (skipUnchanged && isUnchanged(file, temporaryFile, contentDigest, recordedDigest)) {
+            FileUtils.forceDelete(temporaryFile);
+            return false;
+        }
+        if (file.exists()) {
+            FileUtils.forceDelete(file);
+        }
+        FileUtils.moveFile(temporaryFile, file);
+        return true;
+    }
+
+    public boolean isSkipUnchanged() {
+        return skipUnchanged;
+    }
+
+    private boolean isUnchanged(final File file, final byte[] content, final String contentDigest, final String recordedDigest) throws IOException {
+        if (!file.isFile() || file.length() != content.length) {
+            return false;
+        }
+        if (recordedDigest != null && contentDigest != null) {
+            return recordedDigest.equals(contentDigest);
+        }
+        return contentEquals(file, content);
+    }
+
+    private boolean isUnchanged(final File file, final File content, final String contentDigest, final String recordedDigest) throws IOException {
+        if (!file.isFile() || file.length() != content.length()) {
+            return false;
+        }
+        if (recordedDigest != null && contentDigest != null) {
+            return recordedDigest.equals(contentDigest);
+        }
+        return FileUtils.contentEquals(file, content);
+    }
+
+    private boolean contentEquals(final File file, final byte[] content) throws IOException {
+        final InputStream in = new FileInputStream(file);
+        try {
+            return IOUtils.contentEquals(in, new ByteArrayInputStream(content));
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+}
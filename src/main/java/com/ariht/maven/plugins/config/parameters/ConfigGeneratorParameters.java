@@ -41,10 +41,57 @@ public class ConfigGeneratorParameters {
     private boolean logOutput = true;
     private List<String> templatesToIgnore;
     private List<String> filtersToIgnore;
+    // Only templates and filters matching these globs are generated, all of them if empty
+    private List<String> includeTemplates;
+    private List<String> includeFilters;
     private String filterSourcePropertyName = "filter.source";
+    // How filter files are parsed
+    private PropertiesLoader propertiesLoader = PropertiesLoader.COMMONS_CONFIGURATION;
+    // Comma separated parent filters a filter inherits values from, blank to disable
+    private String filterParentsPropertyName = "filter.parents";
+    // Files of this name are layers inherited by every filter in and below their directory
+    private String filterLayerFilename;
     private String propertyPrefix = "${";
     private String propertySuffix = "}";
     private boolean failOnMissingProperty = true;
+    // Templates are held in memory up to this many bytes in total, any others are re-read per filter
+    private long maxTemplateCacheSize = DEFAULT_MAX_TEMPLATE_CACHE_SIZE;
+    // Templates larger than this are streamed through a buffer rather than rendered in memory
+    private long streamingTemplateSize = DEFAULT_STREAMING_TEMPLATE_SIZE;
+    // Output rendered for one filter is reused by filters with the same values for the template's
+    // placeholders, up to this many bytes in total, 0 renders for every filter
+    private long maxSharedRenderSize = DEFAULT_MAX_SHARED_RENDER_SIZE;
+
+    // Number of filters generated concurrently
+    private int threads = 1;
+    // Rendered outputs waiting for the writer thread, rendering waits when full, 0 writes on the rendering thread
+    private int writeQueueSize = DEFAULT_WRITE_QUEUE_SIZE;
+    // Only regenerate output whose inputs have changed since the build recorded in the manifest
+    private boolean incremental = false;
+    // Defaults to outputBasePath + ".manifest"
+    private String manifestFile;
+    // Leave files whose content is identical untouched rather than rewriting them
+    private boolean skipUnchangedFiles = false;
+    // Timing and throughput of each run written here as JSON, not written if blank
+    private String metricsFile;
+    // Number of slowest outputs to report in the metrics
+    private int slowestOutputs = 10;
+    // Write each filter's output into one archive of this format (only zip) instead of separate files
+    private String archiveFormat;
+    // Attach archives to the project, classified by filter
+    private boolean attachArchives = false;
+    // Prepended to each filter's classifier when attaching archives
+    private String archiveClassifierPrefix;
+    // Share parsed filter files and compiled templates with the rest of the build, when run by Maven
+    private boolean reactorCache = true;
+    // Parsed filters kept here between builds in plain text, not kept if blank
+    private String filterCacheFile;
+
+    public static final long DEFAULT_MAX_TEMPLATE_CACHE_SIZE = 64L * 1024 * 1024;
+    public static final long DEFAULT_STREAMING_TEMPLATE_SIZE = 16L * 1024 * 1024;
+    public static final long DEFAULT_MAX_SHARED_RENDER_SIZE = 64L * 1024 * 1024;
+    public static final int DEFAULT_WRITE_QUEUE_SIZE = 64;
+    public static final String ARCHIVE_FORMAT_ZIP = "zip";
 
     protected ConfigGeneratorParameters() {}
 
@@ -112,6 +159,22 @@ public class ConfigGeneratorParameters {
         this.filtersToIgnore = filtersToIgnore;
     }
 
+    public List<String> getIncludeTemplates() {
+        return includeTemplates;
+    }
+
+    public void setIncludeTemplates(List<String> includeTemplates) {
+        this.includeTemplates = includeTemplates;
+    }
+
+    public List<String> getIncludeFilters() {
+        return includeFilters;
+    }
+
+    public void setIncludeFilters(List<String> includeFilters) {
+        this.includeFilters = includeFilters;
+    }
+
     public String getFilterSourcePropertyName() {
         return filterSourcePropertyName;
     }
@@ -120,6 +183,30 @@ public class ConfigGeneratorParameters {
         this.filterSourcePropertyName = filterSourcePropertyName;
     }
 
+    public PropertiesLoader getPropertiesLoader() {
+        return propertiesLoader;
+    }
+
+    public void setPropertiesLoader(PropertiesLoader propertiesLoader) {
+        this.propertiesLoader = propertiesLoader;
+    }
+
+    public String getFilterParentsPropertyName() {
+        return filterParentsPropertyName;
+    }
+
+    public void setFilterParentsPropertyName(String filterParentsPropertyName) {
+        this.filterParentsPropertyName = filterParentsPropertyName;
+    }
+
+    public String getFilterLayerFilename() {
+        return filterLayerFilename;
+    }
+
+    public void setFilterLayerFilename(String filterLayerFilename) {
+        this.filterLayerFilename = filterLayerFilename;
+    }
+
     public String getPropertyPrefix() {
         return propertyPrefix;
     }
@@ -144,6 +231,126 @@ public class ConfigGeneratorParameters {
         this.failOnMissingProperty = failOnMissingProperty;
     }
 
+    public long getMaxTemplateCacheSize() {
+        return maxTemplateCacheSize;
+    }
+
+    public void setMaxTemplateCacheSize(long maxTemplateCacheSize) {
+        this.maxTemplateCacheSize = maxTemplateCacheSize;
+    }
+
+    public long getStreamingTemplateSize() {
+        return streamingTemplateSize;
+    }
+
+    public void setStreamingTemplateSize(long streamingTemplateSize) {
+        this.streamingTemplateSize = streamingTemplateSize;
+    }
+
+    public long getMaxSharedRenderSize() {
+        return maxSharedRenderSize;
+    }
+
+    public void setMaxSharedRenderSize(long maxSharedRenderSize) {
+        this.maxSharedRenderSize = maxSharedRenderSize;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getWriteQueueSize() {
+        return writeQueueSize;
+    }
+
+    public void setWriteQueueSize(int writeQueueSize) {
+        this.writeQueueSize = writeQueueSize;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public String getManifestFile() {
+        return manifestFile;
+    }
+
+    public void setManifestFile(String manifestFile) {
+        this.manifestFile = manifestFile;
+    }
+
+    public boolean isSkipUnchangedFiles() {
+        return skipUnchangedFiles;
+    }
+
+    public void setSkipUnchangedFiles(boolean skipUnchangedFiles) {
+        this.skipUnchangedFiles = skipUnchangedFiles;
+    }
+
+    public String getMetricsFile() {
+        return metricsFile;
+    }
+
+    public void setMetricsFile(String metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    public int getSlowestOutputs() {
+        return slowestOutputs;
+    }
+
+    public void setSlowestOutputs(int slowestOutputs) {
+        this.slowestOutputs = slowestOutputs;
+    }
+
+    public String getArchiveFormat() {
+        return archiveFormat;
+    }
+
+    public void setArchiveFormat(String archiveFormat) {
+        this.archiveFormat = archiveFormat;
+    }
+
+    public boolean isAttachArchives() {
+        return attachArchives;
+    }
+
+    public void setAttachArchives(boolean attachArchives) {
+        this.attachArchives = attachArchives;
+    }
+
+    public String getArchiveClassifierPrefix() {
+        return archiveClassifierPrefix;
+    }
+
+    public void setArchiveClassifierPrefix(String archiveClassifierPrefix) {
+        this.archiveClassifierPrefix = archiveClassifierPrefix;
+    }
+
+    public boolean isReactorCache() {
+        return reactorCache;
+    }
+
+    public void setReactorCache(boolean reactorCache) {
+        this.reactorCache = reactorCache;
+    }
+
+    public String getFilterCacheFile() {
+        return filterCacheFile;
+    }
+
+    public void setFilterCacheFile(String filterCacheFile) {
+        this.filterCacheFile = filterCacheFile;
+    }
+
     @Override
     public String toString() {
         return ToStringBuilder.reflectionToString(this);
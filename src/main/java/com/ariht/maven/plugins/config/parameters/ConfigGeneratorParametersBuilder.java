@@ -27,6 +27,7 @@ import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 
 /**
@@ -111,6 +112,18 @@ public class ConfigGeneratorParametersBuilder {
         return this;
     }
 
+    public ConfigGeneratorParametersBuilder withIncludeTemplates(final List<String> includeTemplates) {
+        log.debug("With templates to include: [" + includeTemplates + "]");
+        configGeneratorParameters.setIncludeTemplates(deDupeList(includeTemplates));
+        return this;
+    }
+
+    public ConfigGeneratorParametersBuilder withIncludeFilters(final List<String> includeFilters) {
+        log.debug("With filters to include: [" + includeFilters + "]");
+        configGeneratorParameters.setIncludeFilters(deDupeList(includeFilters));
+        return this;
+    }
+
     public ConfigGeneratorParametersBuilder withFilterSourcePropertyName(final String filterSourcePropertyName) {
         Preconditions.checkArgument(StringUtils.isNotBlank(filterSourcePropertyName));
         log.debug("With filter source property name: [" + filterSourcePropertyName + "]");
@@ -118,6 +131,27 @@ public class ConfigGeneratorParametersBuilder {
         return this;
     }
 
+    public ConfigGeneratorParametersBuilder withPropertiesLoader(final String propertiesLoader) {
+        Preconditions.checkArgument(StringUtils.isNotBlank(propertiesLoader));
+        log.debug("With properties loader: [" + propertiesLoader + "]");
+        configGeneratorParameters.setPropertiesLoader(PropertiesLoader.fromName(propertiesLoader));
+        return this;
+    }
+
+    public ConfigGeneratorParametersBuilder withFilterParentsPropertyName(final String filterParentsPropertyName) {
+        log.debug("With filter parents property name: [" + filterParentsPropertyName + "]");
+        configGeneratorParameters.setFilterParentsPropertyName(filterParentsPropertyName);
+        return this;
+    }
+
+    public ConfigGeneratorParametersBuilder withFilterLayerFilename(final String filterLayerFilename) {
+        Preconditions.checkArgument(filterLayerFilename == null || (!filterLayerFilename.contains("/") && !filterLayerFilename.contains("\\")),
+                "Filter layer filename must not include a directory");
+        log.debug("With filter layer filename: [" + filterLayerFilename + "]");
+        configGeneratorParameters.setFilterLayerFilename(filterLayerFilename);
+        return this;
+    }
+
     public ConfigGeneratorParametersBuilder withPropertyPrefix(final String propertyPrefix) {
         Preconditions.checkArgument(StringUtils.isNotBlank(propertyPrefix));
         log.debug("With property prefix: [" + propertyPrefix + "]");
@@ -138,6 +172,120 @@ public class ConfigGeneratorParametersBuilder {
         return this;
     }
 
+    public ConfigGeneratorParametersBuilder withMaxTemplateCacheSize(final long maxTemplateCacheSize) {
+        Preconditions.checkArgument(maxTemplateCacheSize >= 0);
+        log.debug("With max template cache size: [" + maxTemplateCacheSize + "]");
+        configGeneratorParameters.setMaxTemplateCacheSize(maxTemplateCacheSize);
+        return this;
+    }
+
+    public ConfigGeneratorParametersBuilder withMaxSharedRenderSize(final long maxSharedRenderSize) {
+        Preconditions.checkArgument(maxSharedRenderSize >= 0);
+        log.debug("With max shared render size: [" + maxSharedRenderSize + "]");
+        configGeneratorParameters.setMaxSharedRenderSize(maxSharedRenderSize);
+        return this;
+    }
+
+    public ConfigGeneratorParametersBuilder withStreamingTemplateSize(final long streamingTemplateSize) {
+        Preconditions.checkArgument(streamingTemplateSize >= 0);
+        log.debug("With streaming template size: [" + streamingTemplateSize + "]");
+        configGeneratorParameters.setStreamingTemplateSize(streamingTemplateSize);
+        return this;
+    }
+
+    /**
+     * Thread count as a number or, like Maven's -T option, a multiple of available cores e.g. 1C or 0.5C.
+     */
+    public ConfigGeneratorParametersBuilder withThreads(final String threads) {
+        Preconditions.checkArgument(StringUtils.isNotBlank(threads));
+        final int threadCount = parseThreads(threads.trim());
+        Preconditions.checkArgument(threadCount > 0, "Threads must be at least 1: [" + threads + "]");
+        log.debug("With threads: [" + threads + "] = " + threadCount);
+        configGeneratorParameters.setThreads(threadCount);
+        return this;
+    }
+
+    /**
+     * Rendered outputs queued for the writer thread, or 0 to write them as they are rendered.
+     */
+    public ConfigGeneratorParametersBuilder withWriteQueueSize(final int writeQueueSize) {
+        Preconditions.checkArgument(writeQueueSize >= 0, "Write queue size cannot be negative: [" + writeQueueSize + "]");
+        log.debug("With write queue size: [" + writeQueueSize + "]");
+        configGeneratorParameters.setWriteQueueSize(writeQueueSize);
+        return this;
+    }
+
+    public ConfigGeneratorParametersBuilder isWithIncremental(final boolean incremental) {
+        log.debug("With incremental: [" + incremental + "]");
+        configGeneratorParameters.setIncremental(incremental);
+        return this;
+    }
+
+    public ConfigGeneratorParametersBuilder withManifestFile(final String manifestFile) {
+        log.debug("With manifest file: [" + manifestFile + "]");
+        configGeneratorParameters.setManifestFile(manifestFile);
+        return this;
+    }
+
+    public ConfigGeneratorParametersBuilder isWithSkipUnchangedFiles(final boolean skipUnchangedFiles) {
+        log.debug("With skip unchanged files: [" + skipUnchangedFiles + "]");
+        configGeneratorParameters.setSkipUnchangedFiles(skipUnchangedFiles);
+        return this;
+    }
+
+    public ConfigGeneratorParametersBuilder withMetricsFile(final String metricsFile) {
+        log.debug("With metrics file: [" + metricsFile + "]");
+        configGeneratorParameters.setMetricsFile(metricsFile);
+        return this;
+    }
+
+    public ConfigGeneratorParametersBuilder withArchiveFormat(final String archiveFormat) {
+        final String format = StringUtils.isBlank(archiveFormat) ? null : archiveFormat.trim().toLowerCase(Locale.ROOT);
+        Preconditions.checkArgument(format == null || ConfigGeneratorParameters.ARCHIVE_FORMAT_ZIP.equals(format), "Unsupported archive format: [" + archiveFormat + "], only zip is supported");
+        log.debug("With archive format: [" + format + "]");
+        configGeneratorParameters.setArchiveFormat(format);
+        return this;
+    }
+
+    public ConfigGeneratorParametersBuilder isWithAttachArchives(final boolean attachArchives) {
+        log.debug("With attach archives: [" + attachArchives + "]");
+        configGeneratorParameters.setAttachArchives(attachArchives);
+        return this;
+    }
+
+    public ConfigGeneratorParametersBuilder withArchiveClassifierPrefix(final String archiveClassifierPrefix) {
+        log.debug("With archive classifier prefix: [" + archiveClassifierPrefix + "]");
+        configGeneratorParameters.setArchiveClassifierPrefix(archiveClassifierPrefix);
+        return this;
+    }
+
+    public ConfigGeneratorParametersBuilder isWithReactorCache(final boolean reactorCache) {
+        log.debug("With reactor cache: [" + reactorCache + "]");
+        configGeneratorParameters.setReactorCache(reactorCache);
+        return this;
+    }
+
+    public ConfigGeneratorParametersBuilder withFilterCacheFile(final String filterCacheFile) {
+        log.debug("With filter cache file: [" + filterCacheFile + "]");
+        configGeneratorParameters.setFilterCacheFile(filterCacheFile);
+        return this;
+    }
+
+    public ConfigGeneratorParametersBuilder withSlowestOutputs(final int slowestOutputs) {
+        Preconditions.checkArgument(slowestOutputs >= 0);
+        log.debug("With slowest outputs: [" + slowestOutputs + "]");
+        configGeneratorParameters.setSlowestOutputs(slowestOutputs);
+        return this;
+    }
+
+    private int parseThreads(final String threads) {
+        if (StringUtils.endsWithIgnoreCase(threads, "C")) {
+            final float perCore = Float.parseFloat(threads.substring(0, threads.length() - 1));
+            return Math.max(1, (int) (perCore * Runtime.getRuntime().availableProcessors()));
+        }
+        return Integer.parseInt(threads);
+    }
+
     private List<String> deDupeList(final List<String> inputList) {
         if (inputList == null || inputList.isEmpty()) {
             return EMPTY_LIST;
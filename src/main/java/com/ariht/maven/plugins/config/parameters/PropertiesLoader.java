@@ -0,0 +1,56 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.parameters;
+
+/**
+ * How filter files are read.
+ */
+public enum PropertiesLoader {
+
+    /**
+     * Apache Commons Configuration, comma separated values are trimmed as list items and
+     * duplicate keys within a file are joined.
+     */
+    COMMONS_CONFIGURATION("commons-configuration"),
+
+    /**
+     * The JDK's properties parser read straight into a map, values trimmed but otherwise exactly
+     * as written and the last of any duplicate keys within a file wins. Considerably faster for
+     * large filters.
+     */
+    NATIVE("native");
+
+    private final String name;
+
+    PropertiesLoader(final String name) {
+        this.name = name;
+    }
+
+    public static PropertiesLoader fromName(final String name) {
+        for (final PropertiesLoader propertiesLoader : values()) {
+            if (propertiesLoader.name.equalsIgnoreCase(name.trim())) {
+                return propertiesLoader;
+            }
+        }
+        throw new IllegalArgumentException("Unknown properties loader: [" + name + "], expected commons-configuration or native");
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -16,11 +16,18 @@
 
 package com.ariht.maven.plugins.config;
 
+import com.ariht.maven.plugins.config.generator.ReactorCache;
+import com.ariht.maven.plugins.config.parameters.ConfigGeneratorParameters;
+import com.ariht.maven.plugins.config.parameters.ConfigGeneratorParametersBuilder;
 import com.google.common.collect.Lists;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.eclipse.aether.RepositorySystemSession;
 import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
@@ -29,6 +36,10 @@ import java.nio.charset.StandardCharsets;
 import java.util.LinkedList;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
 /**
  * Not so much a unit test as an example showing filters and templates being processed together.
  */
@@ -54,6 +65,11 @@ public class ConfigGenerationMojoTest {
         configGenerationMojo.propertySuffix = "}";
         configGenerationMojo.failOnMissingProperty = true;
         configGenerationMojo.filterSourcePropertyName = "filter.source";
+        configGenerationMojo.propertiesLoader = "commons-configuration";
+        configGenerationMojo.maxTemplateCacheSize = ConfigGeneratorParameters.DEFAULT_MAX_TEMPLATE_CACHE_SIZE;
+        configGenerationMojo.streamingTemplateSize = ConfigGeneratorParameters.DEFAULT_STREAMING_TEMPLATE_SIZE;
+        configGenerationMojo.threads = "1";
+        configGenerationMojo.slowestOutputs = 10;
 
         final List<String> externalFiltersBasePath = new LinkedList<String>();
         final String externalTestFilters = getAbsolutePath("externalTestFilters");
@@ -62,6 +78,31 @@ public class ConfigGenerationMojoTest {
         configGenerationMojo.execute();
     }
 
+    /**
+     * Each module is given its own copy of the session, all of them share the build's cache.
+     */
+    @Test
+    public void testModulesShareReactorCache() {
+        final MavenSession session = new MavenSession(null, (RepositorySystemSession) null,
+                new DefaultMavenExecutionRequest(), new DefaultMavenExecutionResult());
+        final ConfigGenerationMojo moduleA = new ConfigGenerationMojo();
+        moduleA.session = session;
+        final ConfigGenerationMojo moduleB = new ConfigGenerationMojo();
+        moduleB.session = session.clone();
+
+        final ReactorCache reactorCache = moduleA.getReactorCache(new ConfigGeneratorParametersBuilder(new TestsLogger())
+                .isWithReactorCache(true).withMaxTemplateCacheSize(1024).build());
+        assertSame(reactorCache, moduleB.getReactorCache(new ConfigGeneratorParametersBuilder(new TestsLogger())
+                .isWithReactorCache(true).withMaxTemplateCacheSize(4096).build()));
+        assertEquals(4096, reactorCache.getMaxSize());
+
+        final ConfigGenerationMojo otherBuild = new ConfigGenerationMojo();
+        otherBuild.session = new MavenSession(null, (RepositorySystemSession) null,
+                new DefaultMavenExecutionRequest(), new DefaultMavenExecutionResult());
+        assertNotSame(reactorCache, otherBuild.getReactorCache(new ConfigGeneratorParametersBuilder(new TestsLogger())
+                .isWithReactorCache(true).build()));
+    }
+
     /**
      * Given a relative path on the classpath, in this case src/tests/resources.
      */
@@ -0,0 +1,438 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.ariht.maven.plugins.config.TestsLogger;
+import com.ariht.maven.plugins.config.parameters.ConfigGeneratorParametersBuilder;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConfigGeneratorImplTest {
+
+    private static final long OLD_TIMESTAMP = 1000000000000L;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testParallelOutputMatchesSerialOutput() throws Exception {
+        final File serialOutput = temporaryFolder.newFolder("serial");
+        final File parallelOutput = temporaryFolder.newFolder("parallel");
+        generate(serialOutput, "1");
+        generate(parallelOutput, "4");
+
+        final Map<String, String> serial = readAll(serialOutput);
+        assertFalse(serial.isEmpty());
+        assertEquals(serial, readAll(parallelOutput));
+    }
+
+    @Test
+    public void testIncrementalBuildOnlyRegeneratesChangedOutputs() throws Exception {
+        final File inputs = copyInputs();
+        final File output = new File(temporaryFolder.getRoot(), "output");
+        generateIncremental(inputs, output);
+        final File dbConnection = new File(output, "unit_test_qa/properties/unit_test_db_connection.properties");
+        final File liquibase = new File(output, "unit_test_qa/liquibase/liquibase.properties");
+        assertTrue(dbConnection.isFile());
+        assertTrue(liquibase.isFile());
+        assertTrue(dbConnection.setLastModified(OLD_TIMESTAMP));
+        assertTrue(liquibase.setLastModified(OLD_TIMESTAMP));
+
+        // Nothing changed so nothing rewritten
+        generateIncremental(inputs, output);
+        assertEquals(OLD_TIMESTAMP, dbConnection.lastModified());
+        assertEquals(OLD_TIMESTAMP, liquibase.lastModified());
+
+        // Only outputs of the changed template are regenerated
+        FileUtils.writeStringToFile(new File(inputs, "templates/liquibase/liquibase.properties"), "url=${db.host}\n");
+        generateIncremental(inputs, output);
+        assertEquals(OLD_TIMESTAMP, dbConnection.lastModified());
+        assertEquals("url=somehost\n", FileUtils.readFileToString(liquibase));
+    }
+
+    @Test
+    public void testFilterChangeOnlyRegeneratesTemplatesReferencingChangedKeys() throws Exception {
+        final File inputs = copyInputs();
+        final File output = new File(temporaryFolder.getRoot(), "output");
+        generateIncremental(inputs, output);
+        final File dbConnection = new File(output, "unit_test_qa/properties/unit_test_db_connection.properties");
+        final File liquibase = new File(output, "unit_test_qa/liquibase/liquibase.properties");
+        assertTrue(dbConnection.setLastModified(OLD_TIMESTAMP));
+        assertTrue(liquibase.setLastModified(OLD_TIMESTAMP));
+
+        // Only the liquibase template references the admin password
+        final File filter = new File(inputs, "filters/unit_test_qa.filter");
+        FileUtils.writeStringToFile(filter, FileUtils.readFileToString(filter).replace("qaadminpwd", "changed"));
+        generateIncremental(inputs, output);
+        assertEquals(OLD_TIMESTAMP, dbConnection.lastModified());
+        assertTrue(FileUtils.readFileToString(liquibase).contains("password=changed"));
+    }
+
+    @Test
+    public void testIncrementalBuildRemovesOutputsOfDeletedFilters() throws Exception {
+        final File inputs = copyInputs();
+        final File output = new File(temporaryFolder.getRoot(), "output");
+        generateIncremental(inputs, output);
+        assertTrue(new File(output, "unit_test_qa/auto_deploy.sh").isFile());
+
+        FileUtils.forceDelete(new File(inputs, "filters/unit_test_qa.filter"));
+        generateIncremental(inputs, output);
+        assertFalse(new File(output, "unit_test_qa").exists());
+        assertTrue(new File(output, "unit_test_dev/auto_deploy.sh").isFile());
+    }
+
+    @Test
+    public void testUnchangedFilesAreNotRewritten() throws Exception {
+        final File inputs = copyInputs();
+        final File output = new File(temporaryFolder.getRoot(), "output");
+        generate(getParametersBuilder(inputs, output).isWithSkipUnchangedFiles(true));
+        final File qaDbConnection = new File(output, "unit_test_qa/properties/unit_test_db_connection.properties");
+        final File devDbConnection = new File(output, "unit_test_dev/properties/unit_test_db_connection.properties");
+        assertTrue(qaDbConnection.setLastModified(OLD_TIMESTAMP));
+        assertTrue(devDbConnection.setLastModified(OLD_TIMESTAMP));
+        final File stale = new File(output, "unit_test_qa/stale/old.properties");
+        FileUtils.writeStringToFile(stale, "old");
+
+        FileUtils.writeStringToFile(new File(inputs, "filters/unit_test_qa.filter"),
+                FileUtils.readFileToString(new File(inputs, "filters/unit_test_qa.filter")).replace("db.name=qa_db", "db.name=qa_db_2"));
+        generate(getParametersBuilder(inputs, output).isWithSkipUnchangedFiles(true));
+
+        assertEquals(OLD_TIMESTAMP, devDbConnection.lastModified());
+        assertTrue(qaDbConnection.lastModified() != OLD_TIMESTAMP);
+        assertTrue(FileUtils.readFileToString(qaDbConnection).contains("c3p0.database.name=qa_db_2"));
+        assertFalse(stale.exists());
+        assertFalse(stale.getParentFile().exists());
+    }
+
+    @Test
+    public void testStreamedOutputMatchesInMemoryOutput() throws Exception {
+        final File inputs = copyInputs();
+        final File inMemoryOutput = new File(temporaryFolder.getRoot(), "in-memory");
+        final File streamedOutput = new File(temporaryFolder.getRoot(), "streamed");
+        generate(getParametersBuilder(inputs, inMemoryOutput).isWithFailOnMissingProperty(false));
+        generate(getParametersBuilder(inputs, streamedOutput).isWithFailOnMissingProperty(false).withStreamingTemplateSize(0));
+
+        final Map<String, String> inMemory = readAll(inMemoryOutput);
+        assertFalse(inMemory.isEmpty());
+        assertEquals(inMemory, readAll(streamedOutput));
+    }
+
+    @Test
+    public void testMissingPropertiesAreReported() throws Exception {
+        final File inputs = copyInputs();
+        final File output = new File(temporaryFolder.getRoot(), "output");
+        FileUtils.writeStringToFile(new File(inputs, "templates/missing.properties"),
+                "qa=${qa.only}\nnowhere=${defined.nowhere}\nderived=${derived}\n");
+        FileUtils.writeStringToFile(new File(inputs, "filters/unit_test_qa.filter"), "\nqa.only=yes\n", true);
+        FileUtils.writeStringToFile(new File(inputs, "filters/unit_test_dev.filter"), "\nderived=from ${qa.only}\n", true);
+
+        try {
+            generate(getParametersBuilder(inputs, output));
+            fail("Expected missing properties to fail the build");
+        } catch (MojoFailureException e) {
+            final String devFilter = new File(inputs, "filters/unit_test_dev.filter").getAbsolutePath();
+            assertTrue(e.getMessage().contains(devFilter + ": qa.only, defined.nowhere\n"));
+        }
+
+        generate(getParametersBuilder(inputs, output).isWithFailOnMissingProperty(false));
+        assertEquals("qa=<<<<<<< qa.only >>>>>>>\nnowhere=${defined.nowhere}\nderived=from <<<<<<< qa.only >>>>>>>\n",
+                FileUtils.readFileToString(new File(output, "unit_test_dev/missing.properties")));
+        assertEquals("qa=yes\nnowhere=${defined.nowhere}\nderived=<<<<<<< derived >>>>>>>\n",
+                FileUtils.readFileToString(new File(output, "unit_test_qa/missing.properties")));
+    }
+
+    @Test
+    public void testBinaryTemplatesAreCopiedUnchanged() throws Exception {
+        final File inputs = copyInputs();
+        final File output = new File(temporaryFolder.getRoot(), "output");
+        final byte[] keystore = {(byte) 0xFE, (byte) 0xED, 0, 0, '$', '{', 'd', 'b', '.', 'h', 'o', 's', 't', '}', (byte) 0xFF};
+        FileUtils.writeByteArrayToFile(new File(inputs, "templates/keystore.jks"), keystore);
+        generate(getParametersBuilder(inputs, output));
+        assertArrayEquals(keystore, FileUtils.readFileToByteArray(new File(output, "unit_test_qa/keystore.jks")));
+        assertArrayEquals(keystore, FileUtils.readFileToByteArray(new File(output, "unit_test_dev/keystore.jks")));
+
+        generate(getParametersBuilder(inputs, output).withStreamingTemplateSize(0));
+        assertArrayEquals(keystore, FileUtils.readFileToByteArray(new File(output, "unit_test_qa/keystore.jks")));
+    }
+
+    @Test
+    public void testMetricsAreWritten() throws Exception {
+        final File inputs = copyInputs();
+        final File output = new File(temporaryFolder.getRoot(), "output");
+        final File metricsFile = new File(temporaryFolder.getRoot(), "metrics.json");
+        generate(getParametersBuilder(inputs, output).withMetricsFile(metricsFile.getAbsolutePath()).withSlowestOutputs(2));
+        final String metrics = FileUtils.readFileToString(metricsFile, "UTF-8");
+        final int outputs = readAll(output).size();
+        assertTrue(metrics.contains("\"written\": " + outputs + ", "));
+        assertTrue(metrics.contains("\"generate\": "));
+        assertEquals(2, StringUtils.countMatches(metrics, "{\"path\": \"" + output.getAbsolutePath()));
+    }
+
+    @Test
+    public void testArchivedOutputMatchesFileOutput() throws Exception {
+        final File inputs = copyInputs();
+        final File fileOutput = new File(temporaryFolder.getRoot(), "files");
+        final File archiveOutput = new File(temporaryFolder.getRoot(), "archives");
+        generate(getParametersBuilder(inputs, fileOutput));
+        final ConfigGeneratorImpl configGenerator = new ConfigGeneratorImpl(new TestsLogger(),
+                getParametersBuilder(inputs, archiveOutput).withArchiveFormat("zip").withArchiveClassifierPrefix("config").build());
+        configGenerator.processFiltersIntoTemplates();
+
+        final Map<String, String> files = readAll(fileOutput);
+        final Map<String, String> archived = new TreeMap<String, String>();
+        for (final File archive : FileUtils.listFiles(archiveOutput, null, true)) {
+            final String filterPath = FilenameUtils.removeExtension(
+                    FilenameUtils.separatorsToUnix(archive.getAbsolutePath().substring(archiveOutput.getAbsolutePath().length())));
+            final ZipFile zipFile = new ZipFile(archive);
+            try {
+                for (final ZipEntry entry : Collections.list(zipFile.entries())) {
+                    archived.put(filterPath + "/" + entry.getName(), IOUtils.toString(zipFile.getInputStream(entry)));
+                }
+            } finally {
+                zipFile.close();
+            }
+        }
+        assertFalse(files.isEmpty());
+        assertEquals(files, archived);
+        assertEquals(new File(archiveOutput, "unit_test_qa.zip"), configGenerator.getArchives().get("config-unit_test_qa"));
+    }
+
+    @Test
+    public void testReactorCacheIsSharedBetweenGenerations() throws Exception {
+        final File inputs = copyInputs();
+        final File firstOutput = new File(temporaryFolder.getRoot(), "first");
+        final File secondOutput = new File(temporaryFolder.getRoot(), "second");
+        final ReactorCache reactorCache = new ReactorCache(1024 * 1024);
+        new ConfigGeneratorImpl(new TestsLogger(), getParametersBuilder(inputs, firstOutput).build(), reactorCache).processFiltersIntoTemplates();
+        final int misses = reactorCache.getMisses();
+        new ConfigGeneratorImpl(new TestsLogger(), getParametersBuilder(inputs, secondOutput).build(), reactorCache).processFiltersIntoTemplates();
+
+        assertEquals(misses, reactorCache.getMisses());
+        assertTrue(reactorCache.getHits() >= misses);
+        assertEquals(readAll(firstOutput), readAll(secondOutput));
+    }
+
+    @Test
+    public void testFilterCacheGivesSameOutput() throws Exception {
+        final File inputs = copyInputs();
+        final File output = new File(temporaryFolder.getRoot(), "output");
+        final File filterCacheFile = new File(temporaryFolder.getRoot(), "filters.cache");
+        generate(getParametersBuilder(inputs, output));
+        final Map<String, String> parsed = readAll(output);
+
+        generate(getParametersBuilder(inputs, output).withFilterCacheFile(filterCacheFile.getAbsolutePath()));
+        assertTrue(filterCacheFile.isFile());
+        assertEquals(parsed, readAll(output));
+        generate(getParametersBuilder(inputs, output).withFilterCacheFile(filterCacheFile.getAbsolutePath()));
+        assertEquals(parsed, readAll(output));
+
+        FileUtils.writeStringToFile(new File(inputs, "filters/unit_test_qa.filter"), "\ndb.host=changed\n", true);
+        generate(getParametersBuilder(inputs, output).withFilterCacheFile(filterCacheFile.getAbsolutePath()));
+        assertTrue(readAll(output).get("/unit_test_qa/properties/unit_test_db_connection.properties").contains("changed"));
+    }
+
+    @Test
+    public void testFilterCacheResolvesLookupsEveryBuild() throws Exception {
+        final File inputs = temporaryFolder.newFolder("inputs");
+        FileUtils.writeStringToFile(new File(inputs, "templates/who.txt"), "user=${who}\n");
+        FileUtils.writeStringToFile(new File(inputs, "filters/dev.filter"), "who=${sys:config.generation.test.who}\n");
+        final File output = new File(temporaryFolder.getRoot(), "output");
+        final ConfigGeneratorParametersBuilder builder = new ConfigGeneratorParametersBuilder(new TestsLogger())
+                .withTemplatesBasePath(new File(inputs, "templates").getAbsolutePath())
+                .withFiltersBasePath(new File(inputs, "filters").getAbsolutePath())
+                .withOutputBasePath(output.getAbsolutePath())
+                .withFilterCacheFile(new File(temporaryFolder.getRoot(), "filters.cache").getAbsolutePath());
+        try {
+            System.setProperty("config.generation.test.who", "alice");
+            generate(builder);
+            assertEquals("user=alice\n", readAll(output).get("/dev/who.txt"));
+
+            System.setProperty("config.generation.test.who", "bob");
+            generate(builder);
+            assertEquals("user=bob\n", readAll(output).get("/dev/who.txt"));
+        } finally {
+            System.clearProperty("config.generation.test.who");
+        }
+    }
+
+    @Test
+    public void testQueuedWritesMatchDirectWrites() throws Exception {
+        final File inputs = copyInputs();
+        final File direct = new File(temporaryFolder.getRoot(), "direct");
+        final File queued = new File(temporaryFolder.getRoot(), "queued");
+        generate(getParametersBuilder(inputs, direct).withWriteQueueSize(0));
+        generate(getParametersBuilder(inputs, queued).withWriteQueueSize(1).withThreads("4"));
+        assertEquals(readAll(direct), readAll(queued));
+    }
+
+    @Test
+    public void testQueuedWritesAreRecordedOnceWritten() throws Exception {
+        final File inputs = copyInputs();
+        final File output = new File(temporaryFolder.getRoot(), "output");
+        generate(getParametersBuilder(inputs, output).isWithIncremental(true).withWriteQueueSize(1).withThreads("4"));
+
+        final Properties manifest = new Properties();
+        final InputStream in = new FileInputStream(new File(output.getPath() + ".manifest"));
+        try {
+            manifest.load(in);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        int outputs = 0;
+        for (final String key : manifest.stringPropertyNames()) {
+            if (key.startsWith("output.")) {
+                // Size and modification time of the file as written, so its digest can be trusted next build
+                final File outputFile = new File(StringUtils.removeStart(key, "output."));
+                final String[] fields = StringUtils.splitPreserveAllTokens(manifest.getProperty(key), '|');
+                assertEquals(key, String.valueOf(outputFile.length()), fields[3]);
+                assertEquals(key, String.valueOf(outputFile.lastModified()), fields[4]);
+                outputs++;
+            }
+        }
+        assertEquals(readAll(output).size(), outputs);
+    }
+
+    @Test
+    public void testQueuedWriteFailureFailsGeneration() throws Exception {
+        final File inputs = copyInputs();
+        final File output = new File(temporaryFolder.getRoot(), "output");
+        final File blocked = new File(output, "unit_test_qa/properties/unit_test_db_connection.properties");
+        FileUtils.forceMkdir(new File(blocked, "directory"));
+        try {
+            generate(getParametersBuilder(inputs, output).isWithSkipUnchangedFiles(true));
+            fail("Expected writing over a directory to fail");
+        } catch (MojoFailureException e) {
+            assertTrue(e.getMessage().contains(blocked.getName()));
+        }
+    }
+
+    @Test
+    public void testSharedRendersMatchRenderingEveryFilter() throws Exception {
+        final File inputs = copyInputs();
+        final File separate = new File(temporaryFolder.getRoot(), "separate");
+        final File shared = new File(temporaryFolder.getRoot(), "shared");
+        generate(getParametersBuilder(inputs, separate).withMaxSharedRenderSize(0));
+        generate(getParametersBuilder(inputs, shared).withThreads("4"));
+        assertEquals(readAll(separate), readAll(shared));
+    }
+
+    @Test
+    public void testOnlyIncludedFiltersAndTemplatesAreGenerated() throws Exception {
+        final File inputs = copyInputs();
+        final File output = new File(temporaryFolder.getRoot(), "output");
+        FileUtils.writeStringToFile(new File(inputs, "templates/properties/dev.properties"), "dev=${dev.only}\n");
+        FileUtils.writeStringToFile(new File(inputs, "filters/unit_test_dev.filter"), "\ndev.only=yes\n", true);
+        final ConfigGeneratorParametersBuilder builder = getParametersBuilder(inputs, output)
+                .withIncludeFilters(Lists.newArrayList("unit_test_qa", "personal/*_foo"))
+                .withIncludeTemplates(Lists.newArrayList("properties/*"));
+        try {
+            generate(builder);
+            fail("Expected missing properties to fail the build");
+        } catch (MojoFailureException e) {
+            // Only the selected filters are checked, the excluded filter defining the key is never read
+            assertTrue(e.getMessage().contains(new File(inputs, "filters/unit_test_qa.filter").getAbsolutePath() + ": dev.only\n"));
+            assertFalse(e.getMessage().contains("unit_test_dev.filter"));
+        }
+
+        generate(builder.isWithFailOnMissingProperty(false));
+        final Map<String, String> generated = readAll(output);
+        assertEquals(6, generated.size());
+        assertTrue(generated.containsKey("/unit_test_qa/properties/unit_test_db_connection.properties"));
+        assertTrue(generated.containsKey("/personal/unit_test_foo/properties/unit_test_other_config.properties"));
+        assertEquals("dev=${dev.only}\n", generated.get("/unit_test_qa/properties/dev.properties"));
+    }
+
+    private File copyInputs() throws IOException {
+        final File inputs = temporaryFolder.newFolder("inputs");
+        FileUtils.copyDirectory(new File(getResourcePath("templates")), new File(inputs, "templates"));
+        FileUtils.copyDirectory(new File(getResourcePath("filters")), new File(inputs, "filters"));
+        FileUtils.copyDirectory(new File(getResourcePath("externalTestFilters")), new File(inputs, "externalTestFilters"));
+        return inputs;
+    }
+
+    private void generateIncremental(final File inputs, final File outputDirectory) throws MojoExecutionException, MojoFailureException {
+        generate(getParametersBuilder(inputs, outputDirectory).isWithIncremental(true));
+    }
+
+    private void generate(final ConfigGeneratorParametersBuilder builder) throws MojoExecutionException, MojoFailureException {
+        new ConfigGeneratorImpl(new TestsLogger(), builder.build()).processFiltersIntoTemplates();
+    }
+
+    private ConfigGeneratorParametersBuilder getParametersBuilder(final File inputs, final File outputDirectory) {
+        return new ConfigGeneratorParametersBuilder(new TestsLogger())
+                .withTemplatesBasePath(new File(inputs, "templates").getAbsolutePath())
+                .withFiltersBasePath(new File(inputs, "filters").getAbsolutePath())
+                .withExternalFilterBasePaths(Lists.newArrayList(new File(inputs, "externalTestFilters").getAbsolutePath()))
+                .withFiltersToIgnore(Lists.newArrayList(new File(inputs, "filters/personal/README").getAbsolutePath()))
+                .withTemplatesToIgnore(Lists.<String>newArrayList())
+                .withOutputBasePath(outputDirectory.getAbsolutePath());
+    }
+
+    private void generate(final File outputDirectory, final String threads) throws MojoExecutionException, MojoFailureException {
+        final ConfigGeneratorParametersBuilder builder = new ConfigGeneratorParametersBuilder(new TestsLogger())
+                .withTemplatesBasePath(getResourcePath("templates"))
+                .withFiltersBasePath(getResourcePath("filters"))
+                .withExternalFilterBasePaths(Lists.newArrayList(getResourcePath("externalTestFilters")))
+                .withFiltersToIgnore(Lists.newArrayList(getResourcePath("filters/personal/README")))
+                .withTemplatesToIgnore(Lists.<String>newArrayList())
+                .withOutputBasePath(outputDirectory.getAbsolutePath())
+                .withThreads(threads);
+        new ConfigGeneratorImpl(new TestsLogger(), builder.build()).processFiltersIntoTemplates();
+    }
+
+    private Map<String, String> readAll(final File directory) throws IOException {
+        final Map<String, String> contentByPath = new TreeMap<String, String>();
+        final Collection<File> files = FileUtils.listFiles(directory, null, true);
+        for (final File file : files) {
+            final String relativePath = FilenameUtils.separatorsToUnix(file.getAbsolutePath().substring(directory.getAbsolutePath().length()));
+            contentByPath.put(relativePath, FileUtils.readFileToString(file));
+        }
+        return contentByPath;
+    }
+
+    private String getResourcePath(final String subDirectoryName) {
+        final URL resource = getClass().getResource("/");
+        return FilenameUtils.normalize(resource.getFile() + subDirectoryName);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.ariht.maven.plugins.config.TestsLogger;
+import com.ariht.maven.plugins.config.parameters.ConfigGeneratorParametersBuilder;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConfigWatcherTest {
+
+    private static final long OLD_TIMESTAMP = 1000000000000L;
+    private static final long TIMEOUT_MILLIS = 20000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testChangedFilterIsRegenerated() throws Exception {
+        final File templates = temporaryFolder.newFolder("templates");
+        final File filters = temporaryFolder.newFolder("filters");
+        final File output = new File(temporaryFolder.getRoot(), "output");
+        FileUtils.writeStringToFile(new File(templates, "db.properties"), "host=${db.host}\n");
+        FileUtils.writeStringToFile(new File(filters, "dev.filter"), "db.host=devhost\n");
+        FileUtils.writeStringToFile(new File(filters, "qa.filter"), "db.host=qahost\n");
+
+        final Semaphore generated = new Semaphore(0);
+        final ConfigWatcher configWatcher = new ConfigWatcher(new TestsLogger(), new ConfigGeneratorParametersBuilder(new TestsLogger())
+                .withTemplatesBasePath(templates.getAbsolutePath())
+                .withFiltersBasePath(filters.getAbsolutePath())
+                .withExternalFilterBasePaths(Lists.<String>newArrayList())
+                .withTemplatesToIgnore(Lists.<String>newArrayList())
+                .withFiltersToIgnore(Lists.<String>newArrayList())
+                .withOutputBasePath(output.getAbsolutePath())
+                .isWithIncremental(true)
+                .build(), 50, new Runnable() {
+                    public void run() {
+                        generated.release();
+                    }
+                });
+        final Thread watcher = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    configWatcher.run();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        watcher.start();
+        try {
+            final File dev = new File(output, "dev/db.properties");
+            final File qa = new File(output, "qa/db.properties");
+            awaitGeneration(generated);
+            assertEquals("host=qahost\n", FileUtils.readFileToString(qa));
+            assertTrue(qa.setLastModified(OLD_TIMESTAMP));
+
+            FileUtils.writeStringToFile(new File(filters, "dev.filter"), "db.host=newdevhost\n");
+            awaitGeneration(generated);
+            assertEquals("host=newdevhost\n", FileUtils.readFileToString(dev));
+            assertEquals(OLD_TIMESTAMP, qa.lastModified());
+        } finally {
+            configWatcher.close();
+            watcher.join(TIMEOUT_MILLIS);
+        }
+    }
+
+    private void awaitGeneration(final Semaphore generated) throws InterruptedException {
+        assertTrue("Timed out waiting for generation", generated.tryAcquire(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    }
+}
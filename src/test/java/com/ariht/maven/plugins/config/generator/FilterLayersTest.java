@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.ariht.maven.plugins.config.TestsLogger;
+import com.ariht.maven.plugins.config.io.FileInfo;
+import com.ariht.maven.plugins.config.parameters.ConfigGeneratorParameters;
+import com.ariht.maven.plugins.config.parameters.ConfigGeneratorParametersBuilder;
+import com.google.common.collect.Lists;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FilterLayersTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testDeclaredParentsAreInherited() throws IOException, ConfigurationException {
+        write("common/global.properties", "db.port=1234\nregion=none\nlog.level=WARN\n");
+        write("common/eu.properties", "filter.parents=global.properties\nregion=eu\n");
+        write("common/debug.properties", "log.level=DEBUG\nregion=debug\ntrace=on\n");
+        final FileInfo dev = createFilter("filters/dev.filter", "filter.parents=../common/eu.properties, ../common/debug.properties\ndb.host=devhost\n");
+
+        final FilterSet filterSet = load(getParameters(), dev);
+        final Map<String, String> values = filterSet.getValues(dev);
+        assertEquals("devhost", values.get("db.host"));
+        assertEquals("1234", values.get("db.port"));
+        // First listed parent wins, along with everything it inherits
+        assertEquals("eu", values.get("region"));
+        assertEquals("WARN", values.get("log.level"));
+        assertEquals("on", values.get("trace"));
+        assertFalse(values.containsKey("filter.parents"));
+        assertTrue(filterSet.getAllKeys().contains("db.port"));
+    }
+
+    @Test
+    public void testDirectoryLayersAreInheritedDeepestFirst() throws IOException, ConfigurationException {
+        write("filters/_layer.properties", "tier=none\nregion=global\n");
+        write("filters/eu/_layer.properties", "region=eu\n");
+        final FileInfo host = createFilter("filters/eu/host1.filter", "tier=web\n");
+        final FileInfo other = createFilter("filters/other.filter", "");
+
+        final ConfigGeneratorParameters parameters = new ConfigGeneratorParametersBuilder(new TestsLogger())
+                .withFiltersBasePath(new File(temporaryFolder.getRoot(), "filters").getAbsolutePath())
+                .withFilterLayerFilename("_layer.properties")
+                .build();
+        final FilterSet filterSet = load(parameters, host, other);
+        assertEquals("web", filterSet.getValues(host).get("tier"));
+        assertEquals("eu", filterSet.getValues(host).get("region"));
+        assertEquals("global", filterSet.getValues(other).get("region"));
+    }
+
+    @Test
+    public void testSharedLayersAreParsedOnce() throws IOException, ConfigurationException {
+        write("common/global.properties", "db.port=1234\n");
+        final FileInfo dev = createFilter("filters/dev.filter", "filter.parents=../common/global.properties\n");
+        final FileInfo prod = createFilter("filters/prod.filter", "filter.parents=../common/global.properties\n");
+        final CountingFilterLoader filterLoader = new CountingFilterLoader(getParameters());
+        final FilterLayers filterLayers = new FilterLayers(filterLoader, getParameters());
+
+        final FilterSet previous = FilterSet.load(filterLoader, filterLayers, Lists.newArrayList(dev, prod), null);
+        FilterSet.load(filterLoader, filterLayers, Lists.newArrayList(dev, prod), previous);
+        assertEquals(1, filterLoader.layersLoaded);
+        assertEquals("1234", previous.getValues(prod).get("db.port"));
+    }
+
+    @Test
+    public void testParentValuesReferToChildOverrides() throws IOException, ConfigurationException {
+        write("common/global.properties", "db.host=globalhost\ndb.url=jdbc:${db.host}\n");
+        final FileInfo dev = createFilter("filters/dev.filter", "filter.parents=../common/global.properties\ndb.host=devhost\n");
+        for (final String propertiesLoader : Lists.newArrayList("commons-configuration", "native")) {
+            final FilterSet filterSet = load(new ConfigGeneratorParametersBuilder(new TestsLogger())
+                    .withPropertiesLoader(propertiesLoader)
+                    .build(), dev);
+            final FilterValues filterValues = FilterValues.expand(filterSet.getValues(dev), filterSet.getAllKeys(), "${", "}");
+            assertEquals(propertiesLoader, "jdbc:devhost", filterValues.getValues().get("db.url"));
+        }
+    }
+
+    @Test
+    public void testParentCycleIsReported() throws IOException {
+        write("common/a.properties", "filter.parents=b.properties\n");
+        write("common/b.properties", "filter.parents=a.properties\n");
+        final FileInfo dev = createFilter("filters/dev.filter", "filter.parents=../common/a.properties\n");
+        try {
+            load(getParameters(), dev);
+            fail("Cycle should be reported");
+        } catch (ConfigurationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("a.properties -> "));
+            assertTrue(e.getMessage(), e.getMessage().endsWith("b.properties -> " + new File(temporaryFolder.getRoot(), "common/a.properties").getCanonicalPath()));
+        }
+    }
+
+    private FilterSet load(final ConfigGeneratorParameters parameters, final FileInfo... filters) throws IOException, ConfigurationException {
+        final FilterLoader filterLoader = new FilterLoader(parameters);
+        return FilterSet.load(filterLoader, new FilterLayers(filterLoader, parameters), Lists.newArrayList(filters), null);
+    }
+
+    private ConfigGeneratorParameters getParameters() {
+        return new ConfigGeneratorParametersBuilder(new TestsLogger()).build();
+    }
+
+    private File write(final String path, final String content) throws IOException {
+        final File file = new File(temporaryFolder.getRoot(), path);
+        FileUtils.writeStringToFile(file, content);
+        return file;
+    }
+
+    private FileInfo createFilter(final String path, final String content) throws IOException {
+        final FileInfo fileInfo = new FileInfo(new TestsLogger(), write(path, content));
+        fileInfo.setRelativeSubDirectory("");
+        return fileInfo;
+    }
+
+    private static class CountingFilterLoader extends FilterLoader {
+        private int layersLoaded;
+
+        private CountingFilterLoader(final ConfigGeneratorParameters configGeneratorParameters) {
+            super(configGeneratorParameters);
+        }
+
+        @Override
+        public Map<String, String> loadLayer(final File file) throws ConfigurationException, IOException {
+            layersLoaded++;
+            return super.loadLayer(file);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.ariht.maven.plugins.config.TestsLogger;
+import com.ariht.maven.plugins.config.io.DirectoryReader;
+import com.ariht.maven.plugins.config.io.FileInfo;
+import com.ariht.maven.plugins.config.parameters.ConfigGeneratorParametersBuilder;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * The native loader must give the same values as Commons Configuration for everything other
+ * than its documented differences (comma separated lists and duplicate keys).
+ */
+public class FilterLoaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testNativeLoaderMatchesCommonsConfigurationForTestFilters() throws Exception {
+        final List<FileInfo> filters = new DirectoryReader(new TestsLogger()).readFiles(getResourcePath("filters"), null);
+        assertFalse(filters.isEmpty());
+        for (final FileInfo filter : filters) {
+            filter.lookForExternalFiles(Lists.newArrayList(getResourcePath("externalTestFilters")));
+            assertEquals(filter.toString(), getLoader("commons-configuration").load(filter), getLoader("native").load(filter));
+        }
+    }
+
+    @Test
+    public void testNativeLoaderMatchesCommonsConfigurationSyntax() throws Exception {
+        final File file = temporaryFolder.newFile("syntax.filter");
+        FileUtils.writeStringToFile(file, "# comment\n! also a comment\n"
+                + "plain=value\n"
+                + "  spaced   =   leading spaces trimmed  \n"
+                + "colon:separated\n"
+                + "space separated\n"
+                + "escaped\\ key=value\n"
+                + "continued=first \\\n    second\n"
+                + "path=C:\\\\windows\\\\path\n"
+                + "unicode=caf\\u00e9\n"
+                + "latin1=caf\u00e9\n"
+                + "placeholder=${plain} and ${undefined}\n"
+                + "escaped.comma=one\\,two\n"
+                + "empty=\n", "ISO-8859-1");
+        final FileInfo filter = new FileInfo(new TestsLogger(), file);
+        filter.setRelativeSubDirectory("");
+        final Map<String, String> expected = new HashMap<String, String>(getLoader("commons-configuration").load(filter));
+        final Map<String, String> values = new HashMap<String, String>(getLoader("native").load(filter));
+        assertEquals("caf\u00e9", values.get("latin1"));
+        assertEquals("${plain} and ${undefined}", values.get("placeholder"));
+        // Commons Configuration interpolates on loading, the generator expands place-holders afterwards either way
+        assertEquals("value and ${undefined}", expected.get("placeholder"));
+        expected.remove("placeholder");
+        values.remove("placeholder");
+        assertEquals(expected, values);
+    }
+
+    @Test
+    public void testFilterFileTakesPrecedenceOverExternalFiles() throws Exception {
+        final File filterFile = new File(temporaryFolder.newFolder("filters"), "dev.filter");
+        FileUtils.writeStringToFile(filterFile, "db.host=devhost\n");
+        final File external = temporaryFolder.newFolder("external");
+        FileUtils.writeStringToFile(new File(external, "dev.filter"), "db.host=externalhost\ndb.port=1234\nfilter.source=overridden\n");
+        final FileInfo filter = new FileInfo(new TestsLogger(), filterFile);
+        filter.setRelativeSubDirectory("");
+        filter.lookForExternalFiles(Lists.newArrayList(external.getAbsolutePath()));
+
+        final Map<String, String> values = getLoader("native").load(filter);
+        assertEquals("devhost", values.get("db.host"));
+        assertEquals("1234", values.get("db.port"));
+        assertEquals(getLoader("commons-configuration").load(filter), values);
+    }
+
+    private FilterLoader getLoader(final String propertiesLoader) {
+        return new FilterLoader(new ConfigGeneratorParametersBuilder(new TestsLogger()).withPropertiesLoader(propertiesLoader).build());
+    }
+
+    private String getResourcePath(final String subDirectoryName) {
+        final URL url = this.getClass().getResource("/" + subDirectoryName);
+        return new File(url.getFile()).getAbsolutePath();
+    }
+}
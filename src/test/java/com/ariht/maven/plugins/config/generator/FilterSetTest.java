@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.ariht.maven.plugins.config.TestsLogger;
+import com.ariht.maven.plugins.config.io.FileInfo;
+import com.ariht.maven.plugins.config.parameters.ConfigGeneratorParameters;
+import com.ariht.maven.plugins.config.parameters.ConfigGeneratorParametersBuilder;
+import com.google.common.collect.Lists;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FilterSetTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testFiltersAreIndexedWithAllKeys() throws IOException, ConfigurationException {
+        final FileInfo dev = createFilter("filters", "dev.filter", "db.host=devhost\ndb.port=1234\n");
+        final FileInfo prod = createFilter("filters", "prod.filter", "db.host=prodhost\ndb.name=live_db\n");
+        createFilter("external", "prod.filter", "db.host=externalhost\ndb.port=5432\n");
+        prod.lookForExternalFiles(Lists.newArrayList(new File(temporaryFolder.getRoot(), "external").getAbsolutePath()));
+
+        final FilterSet filterSet = FilterSet.load(new FilterLoader(getParameters()), Lists.newArrayList(dev, prod));
+
+        assertEquals(2, filterSet.size());
+        assertEquals(Lists.newArrayList(dev, prod), Lists.newArrayList(filterSet.getFilters()));
+        assertTrue(filterSet.getAllKeys().containsAll(Lists.newArrayList("db.host", "db.port", "db.name")));
+        assertEquals("devhost", filterSet.getValues(dev).get("db.host"));
+        assertNull(filterSet.getValues(dev).get("db.name"));
+        // Filter takes precedence over external files which only fill in the gaps
+        assertEquals("prodhost", filterSet.getValues(prod).get("db.host"));
+        assertEquals("5432", filterSet.getValues(prod).get("db.port"));
+    }
+
+    @Test
+    public void testUnchangedFiltersAreReused() throws IOException, ConfigurationException {
+        final FileInfo dev = createFilter("filters", "dev.filter", "db.host=devhost\n");
+        final FileInfo prod = createFilter("filters", "prod.filter", "db.host=prodhost\n");
+        final FilterLoader filterLoader = new FilterLoader(getParameters());
+        final FilterSet previous = FilterSet.load(filterLoader, Lists.newArrayList(dev, prod));
+
+        FileUtils.writeStringToFile(prod.getFile(), "db.host=newprodhost\ndb.name=live_db\n");
+        final FilterSet filterSet = FilterSet.load(filterLoader, Lists.newArrayList(dev, prod), previous);
+
+        assertSame(previous.getValues(dev), filterSet.getValues(dev));
+        assertEquals("newprodhost", filterSet.getValues(prod).get("db.host"));
+        assertTrue(filterSet.getAllKeys().contains("db.name"));
+    }
+
+    private ConfigGeneratorParameters getParameters() {
+        return new ConfigGeneratorParametersBuilder(new TestsLogger()).build();
+    }
+
+    private FileInfo createFilter(final String directory, final String name, final String content) throws IOException {
+        final File file = new File(new File(temporaryFolder.getRoot(), directory), name);
+        FileUtils.writeStringToFile(file, content);
+        final FileInfo fileInfo = new FileInfo(new TestsLogger(), file);
+        fileInfo.setRelativeSubDirectory("");
+        return fileInfo;
+    }
+}
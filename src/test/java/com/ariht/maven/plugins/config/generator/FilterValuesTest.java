@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.commons.lang.text.StrSubstitutor;
+import org.junit.Test;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FilterValuesTest {
+
+    private static final Set<String> ALL_KEYS = Sets.newHashSet("db.host", "db.port", "db.url", "other.only");
+
+    @Test
+    public void testNestedValuesAreExpanded() {
+        final Map<String, String> values = ImmutableMap.of(
+                "db.url", "jdbc:${db.host}:${db.port}/${db.host}",
+                "db.host", "${host.prefix}-db",
+                "host.prefix", "dev",
+                "db.port", "1234");
+        final FilterValues filterValues = FilterValues.expand(values, ALL_KEYS, "${", "}");
+        assertEquals("jdbc:dev-db:1234/dev-db", filterValues.getValues().get("db.url"));
+        assertEquals("dev-db", filterValues.getValues().get("db.host"));
+        assertEquals(new StrSubstitutor(values).replace(values.get("db.url")), filterValues.getValues().get("db.url"));
+    }
+
+    @Test
+    public void testEscapedAndUnresolvedPlaceHoldersMatchStrSubstitutor() {
+        final Map<String, String> values = ImmutableMap.of(
+                "escaped", "$${db.port} $$${db.port} ${db.port}",
+                "unresolved", "${unknown} ${unterminated",
+                "trailing", "cost $",
+                "joined", "${trailing}${db.port}",
+                "db.port", "1234");
+        final FilterValues filterValues = FilterValues.expand(values, ALL_KEYS, "${", "}");
+        for (final String key : Lists.newArrayList("escaped", "unresolved", "joined")) {
+            assertEquals(key, new StrSubstitutor(values).replace(values.get(key)), filterValues.getValues().get(key));
+        }
+    }
+
+    @Test
+    public void testMissingPropertiesAreReportedThroughReferences() {
+        final Map<String, String> values = ImmutableMap.of(
+                "db.url", "jdbc:${db.host}:${db.port}",
+                "db.host", "${other.only}${unknown}");
+        final FilterValues filterValues = FilterValues.expand(values, ALL_KEYS, "${", "}");
+        assertEquals("jdbc:<<<<<<< other.only >>>>>>>${unknown}:<<<<<<< db.port >>>>>>>", filterValues.getValues().get("db.url"));
+
+        final Set<String> missingProperties = new LinkedHashSet<String>();
+        filterValues.resolve("db.url", missingProperties);
+        assertEquals(Lists.newArrayList("other.only", "unknown", "db.port"), Lists.newArrayList(missingProperties));
+    }
+
+    @Test
+    public void testFiltersShareSlots() {
+        final KeyDictionary dictionary = new KeyDictionary();
+        final Map<String, String> dev = dictionary.toValues(ImmutableMap.of("db.host", "dev-db", "db.port", "1234"));
+        final Map<String, String> prod = dictionary.toValues(ImmutableMap.of("db.port", "5678", "db.url", "${db.port}"));
+        assertEquals(3, dictionary.size());
+        assertEquals(ImmutableMap.of("db.host", "dev-db", "db.port", "1234"), dev);
+        assertSame(prod, dictionary.toValues(prod));
+
+        final FilterValues filterValues = FilterValues.expand(prod, dictionary, ALL_KEYS, "${", "}");
+        assertEquals("5678", filterValues.getValues().get("db.url"));
+        final CompiledTemplate template = new TemplateCompiler("${", "}").compile("${db.url}:${db.host}:${unknown}");
+        final Set<String> missingProperties = new LinkedHashSet<String>();
+        assertEquals("5678:<<<<<<< db.host >>>>>>>:${unknown}", template.render(filterValues, missingProperties));
+        assertEquals(Lists.newArrayList("db.host", "unknown"), Lists.newArrayList(missingProperties));
+
+        // Keys added later bind again
+        dictionary.toValues(ImmutableMap.of("unknown", "known"));
+        assertEquals("known", template.render(FilterValues.expand(ImmutableMap.of("unknown", "known"), dictionary, ALL_KEYS, "${", "}"),
+                new LinkedHashSet<String>()).split(":")[2]);
+    }
+
+    @Test
+    public void testCircularReferencesNameTheChain() {
+        final Map<String, String> values = ImmutableMap.of(
+                "start", "${db.url}",
+                "db.url", "jdbc:${db.host}",
+                "db.host", "${db.port}",
+                "db.port", "${db.url}");
+        try {
+            FilterValues.expand(values, ALL_KEYS, "${", "}");
+            fail("Expected circular reference to be rejected");
+        } catch (IllegalArgumentException e) {
+            // The chain starts wherever expansion first entered the loop
+            assertTrue(e.getMessage(), e.getMessage().endsWith("db.url -> db.host -> db.port -> db.url")
+                    || e.getMessage().endsWith("db.host -> db.port -> db.url -> db.host")
+                    || e.getMessage().endsWith("db.port -> db.url -> db.host -> db.port"));
+        }
+    }
+}
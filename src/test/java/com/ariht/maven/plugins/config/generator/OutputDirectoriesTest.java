@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.ariht.maven.plugins.config.TestsLogger;
+import com.ariht.maven.plugins.config.io.FileInfo;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FilenameUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OutputDirectoriesTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testDistinctDirectoriesAreCreatedOnce() throws Exception {
+        final String outputBasePath = FilenameUtils.separatorsToUnix(new File(temporaryFolder.getRoot(), "output").getAbsolutePath());
+        final FileInfo dev = fileInfo("filters/dev.filter", "");
+        final FileInfo bar = fileInfo("filters/personal/bar.filter", File.separator + "personal");
+        final FileInfo top = fileInfo("templates/top.properties", "");
+        final FileInfo db = fileInfo("templates/db/db.properties", File.separator + "db");
+        final FileInfo pool = fileInfo("templates/db/pool.properties", File.separator + "db");
+        final List<FileInfo> templates = Lists.newArrayList(top, db, pool);
+
+        final OutputDirectories outputDirectories = new OutputDirectories(outputBasePath, Lists.newArrayList(dev, bar), templates);
+        assertEquals(4, outputDirectories.getDirectories().size());
+        assertEquals(4, outputDirectories.create(new TestsLogger()));
+        assertTrue(new File(outputBasePath, "personal/bar/db").isDirectory());
+        assertEquals(0, outputDirectories.create(new TestsLogger()));
+
+        assertEquals(outputBasePath + "/dev/top.properties", outputDirectories.getOutputFilename(dev, top));
+        assertEquals(outputBasePath + "/personal/bar/db/pool.properties", outputDirectories.getOutputFilename(bar, pool));
+    }
+
+    private FileInfo fileInfo(final String path, final String relativeSubDirectory) {
+        final FileInfo fileInfo = new FileInfo(new TestsLogger(), new File(temporaryFolder.getRoot(), path));
+        fileInfo.setRelativeSubDirectory(relativeSubDirectory);
+        return fileInfo;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.ariht.maven.plugins.config.TestsLogger;
+import com.ariht.maven.plugins.config.parameters.ConfigGeneratorParameters;
+import com.ariht.maven.plugins.config.parameters.ConfigGeneratorParametersBuilder;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ReactorCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testFileIsLoadedOnceUntilChanged() throws Exception {
+        final File file = temporaryFolder.newFile("shared.filter");
+        FileUtils.writeStringToFile(file, "a=1\n");
+        final ReactorCache reactorCache = new ReactorCache(1024);
+        final CountingLoader loader = new CountingLoader();
+
+        final String first = reactorCache.get("kind", file, loader);
+        assertSame(first, reactorCache.get("kind", new File(file.getParentFile(), "./shared.filter"), loader));
+        assertEquals(1, loader.loads.get());
+        assertEquals(1, reactorCache.getHits());
+
+        FileUtils.writeStringToFile(file, "a=12\n");
+        assertEquals("a=12\n", reactorCache.get("kind", file, loader));
+        assertEquals(2, loader.loads.get());
+        assertEquals(5, reactorCache.getSize());
+
+        // Parsed differently so loaded separately
+        reactorCache.get("other", file, loader);
+        assertEquals(3, loader.loads.get());
+    }
+
+    @Test
+    public void testFilesBeyondLimitAreNotRetained() throws Exception {
+        final File file = temporaryFolder.newFile("large.filter");
+        FileUtils.writeStringToFile(file, "a=1\n");
+        final ReactorCache reactorCache = new ReactorCache(2);
+        final CountingLoader loader = new CountingLoader();
+        reactorCache.get("kind", file, loader);
+        reactorCache.get("kind", file, loader);
+        assertEquals(2, loader.loads.get());
+        assertEquals(0, reactorCache.getSize());
+    }
+
+    @Test
+    public void testConcurrentRequestsLoadOnce() throws Exception {
+        final File file = temporaryFolder.newFile("shared.filter");
+        FileUtils.writeStringToFile(file, "a=1\n");
+        final ReactorCache reactorCache = new ReactorCache(1024);
+        final CountDownLatch loading = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        final ReactorCache.Loader<String> slowLoader = new ReactorCache.Loader<String>() {
+            public String load(final File file) throws IOException {
+                loads.incrementAndGet();
+                try {
+                    loading.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return FileUtils.readFileToString(file);
+            }
+        };
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        return reactorCache.get("kind", file, slowLoader);
+                    }
+                }));
+            }
+            loading.countDown();
+            for (final Future<String> future : futures) {
+                assertEquals("a=1\n", future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testFilterLoadersShareParsedFiles() throws Exception {
+        final File shared = temporaryFolder.newFile("shared.filter");
+        FileUtils.writeStringToFile(shared, "shared=yes\nname=shared\n");
+        final File moduleA = temporaryFolder.newFile("a.filter");
+        FileUtils.writeStringToFile(moduleA, "name=a\n");
+        final File moduleB = temporaryFolder.newFile("b.filter");
+        FileUtils.writeStringToFile(moduleB, "name=b\n");
+        final ReactorCache reactorCache = new ReactorCache(1024);
+        final ConfigGeneratorParameters parameters = new ConfigGeneratorParametersBuilder(new TestsLogger()).build();
+
+        assertEquals("a", new FilterLoader(parameters, reactorCache).loadLayer(moduleA).get("name"));
+        assertEquals("shared", new FilterLoader(parameters, reactorCache).loadLayer(shared).get("name"));
+        final FilterLoader filterLoader = new FilterLoader(parameters, reactorCache);
+        assertEquals("yes", filterLoader.loadLayer(shared).get("shared"));
+        assertEquals("b", filterLoader.loadLayer(moduleB).get("name"));
+        assertEquals(1, reactorCache.getHits());
+        assertEquals(3, reactorCache.getMisses());
+    }
+
+    private static class CountingLoader implements ReactorCache.Loader<String> {
+        private final AtomicInteger loads = new AtomicInteger();
+
+        public String load(final File file) throws IOException {
+            loads.incrementAndGet();
+            return FileUtils.readFileToString(file);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class SharedRendersTest {
+
+    private static final Set<String> ALL_KEYS = Sets.newHashSet("db.host", "db.port", "env.name", "other.only");
+
+    private final KeyDictionary dictionary = new KeyDictionary();
+    private final CompiledTemplate template = new TemplateCompiler("${", "}").compile("jdbc:${db.host}:${db.port}${other.only}");
+
+    @Test
+    public void testFiltersWithTheSameReferencedValuesShareOutput() throws Exception {
+        final SharedRenders sharedRenders = new SharedRenders(1024);
+        final AtomicInteger renders = new AtomicInteger();
+        // Differ only by a key the template does not use
+        final SharedRenders.Rendered dev = render(sharedRenders, ImmutableMap.of("db.host", "db", "db.port", "1234", "env.name", "dev"), renders);
+        final SharedRenders.Rendered qa = render(sharedRenders, ImmutableMap.of("db.host", "db", "db.port", "1234", "env.name", "qa"), renders);
+        final SharedRenders.Rendered prod = render(sharedRenders, ImmutableMap.of("db.host", "db", "db.port", "5678", "env.name", "prod"), renders);
+
+        assertSame(dev, qa);
+        assertEquals("jdbc:db:1234<<<<<<< other.only >>>>>>>", new String(dev.getContent(), Charsets.UTF_8));
+        assertEquals(Sets.newHashSet("other.only"), dev.getMissingProperties());
+        assertEquals("jdbc:db:5678<<<<<<< other.only >>>>>>>", new String(prod.getContent(), Charsets.UTF_8));
+        assertEquals(2, renders.get());
+        assertEquals(1, sharedRenders.getHits());
+    }
+
+    @Test
+    public void testOutputBeyondLimitIsNotRetained() throws Exception {
+        final SharedRenders sharedRenders = new SharedRenders(8);
+        final AtomicInteger renders = new AtomicInteger();
+        final Map<String, String> values = ImmutableMap.of("db.host", "db", "db.port", "1234");
+        render(sharedRenders, values, renders);
+        render(sharedRenders, values, renders);
+        assertEquals(2, renders.get());
+        assertEquals(0, sharedRenders.getSize());
+    }
+
+    private SharedRenders.Rendered render(final SharedRenders sharedRenders,
+                                          final Map<String, String> values,
+                                          final AtomicInteger renders) throws IOException {
+        final FilterValues filterValues = FilterValues.expand(dictionary.toValues(values), dictionary, ALL_KEYS, "${", "}");
+        return sharedRenders.get("template", template, filterValues, new SharedRenders.Renderer() {
+            public SharedRenders.Rendered render() {
+                renders.incrementAndGet();
+                final Set<String> missingProperties = new LinkedHashSet<String>();
+                return new SharedRenders.Rendered(template.render(filterValues, missingProperties).getBytes(Charsets.UTF_8), missingProperties, null);
+            }
+        });
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Streamed rendering must match in memory rendering whatever the buffer size, in particular
+ * when prefixes, suffixes and escapes straddle buffer boundaries.
+ */
+public class StreamingTemplateRendererTest {
+
+    private static final String[] TEMPLATES = {
+            "",
+            "no placeholders at all",
+            "${db.host}",
+            "url=jdbc:${db.driver}://${db.host}:${db.port}/${db.name}",
+            "${db.host}${db.port}",
+            "unknown=${not.defined} known=${db.host}",
+            "escaped=$${db.host} real=${db.host}",
+            "shell $CMD $(dirname $0) $$ ${db.port} $",
+            "empty=${} after=${db.host}",
+            "unterminated=${db.host and ${db.port}",
+            "trailing prefix ${",
+            "trailing escape $",
+            "escape ends placeholder=${db.port$}${db.host}",
+            "value ending in escape=${cost}${db.port} ${cost}$${db.port} ${cost}${not.defined}",
+            "escaped by value=${cost}${cost}${db.host} ${cost}${x${db.port}}",
+            "too long=${this.name.is.longer.than.any.key} after=${db.host}",
+            "too long and unterminated=${this.name.is.longer.than.any.key",
+    };
+
+    @Test
+    public void testRendersSameAsCompiledTemplate() throws IOException {
+        final TemplateCompiler templateCompiler = new TemplateCompiler("${", "}");
+        assertRendersSame(templateCompiler, TEMPLATES);
+    }
+
+    @Test
+    public void testCustomPrefixAndSuffix() throws IOException {
+        final TemplateCompiler templateCompiler = new TemplateCompiler("@@", "@@");
+        assertRendersSame(templateCompiler, "host=@@db.host@@ port=@@db.port@@ escaped=$@@db.host@@ ${db.name} @",
+                "@@@db.host@@@", "@@db.host@@@@db.port@@");
+    }
+
+    @Test
+    public void testRecordsMissingProperties() throws IOException {
+        final TemplateCompiler templateCompiler = new TemplateCompiler("${", "}");
+        final FilterValues values = getValues(templateCompiler);
+        final String template = "${db.host} ${other.filter} $${escaped} ${not.defined} ${db.url}";
+        final Set<String> missingProperties = new LinkedHashSet<String>();
+        final StringWriter writer = new StringWriter();
+        new StreamingTemplateRenderer(templateCompiler, 4).render(new StringReader(template), writer, values, missingProperties);
+
+        final Set<String> expectedMissingProperties = new LinkedHashSet<String>();
+        assertEquals(templateCompiler.compile(template).render(values, expectedMissingProperties), writer.toString());
+        assertEquals(Arrays.asList("other.filter", "not.defined", "db.user"), new ArrayList<String>(missingProperties));
+        assertEquals(expectedMissingProperties, missingProperties);
+    }
+
+    @Test
+    public void testReportsLongNamesAsInMemory() throws IOException {
+        final TemplateCompiler templateCompiler = new TemplateCompiler("${", "}");
+        final FilterValues values = getValues(templateCompiler);
+        final String template = "${" + StringUtils.repeat("x", 3000) + "} ${" + StringUtils.repeat("y", 1024) + "} ${db.host}";
+        final Set<String> missingProperties = new LinkedHashSet<String>();
+        final StringWriter writer = new StringWriter();
+        new StreamingTemplateRenderer(templateCompiler, 8).render(new StringReader(template), writer, values, missingProperties);
+
+        final Set<String> expectedMissingProperties = new LinkedHashSet<String>();
+        assertEquals(templateCompiler.compile(template).render(values, expectedMissingProperties), writer.toString());
+        assertEquals(expectedMissingProperties, missingProperties);
+        assertEquals(Arrays.asList(StringUtils.repeat("x", 1024) + "...", StringUtils.repeat("y", 1024)), new ArrayList<String>(missingProperties));
+    }
+
+    private void assertRendersSame(final TemplateCompiler templateCompiler, final String... templates) throws IOException {
+        final FilterValues values = getValues(templateCompiler);
+        for (final String template : templates) {
+            final String expected = templateCompiler.compile(template).render(values, new HashSet<String>());
+            for (int bufferSize = 1; bufferSize <= 8; bufferSize++) {
+                final StringWriter writer = new StringWriter();
+                new StreamingTemplateRenderer(templateCompiler, bufferSize).render(new StringReader(template), writer, values, new HashSet<String>());
+                assertEquals(template + " with buffer size " + bufferSize, expected, writer.toString());
+            }
+        }
+    }
+
+    private FilterValues getValues(final TemplateCompiler templateCompiler) {
+        final Map<String, String> values = new LinkedHashMap<String, String>();
+        values.put("db.driver", "postgresql");
+        values.put("db.host", "somehost");
+        values.put("db.port", "5432");
+        values.put("db.name", "live_db");
+        values.put("cost", "5 $");
+        values.put("db.url", "jdbc:${db.host}/${db.user}");
+        final Set<String> allKeys = new LinkedHashSet<String>(values.keySet());
+        allKeys.add("other.filter");
+        allKeys.add("db.user");
+        return FilterValues.expand(values, allKeys, templateCompiler.getPrefix(), templateCompiler.getSuffix());
+    }
+}
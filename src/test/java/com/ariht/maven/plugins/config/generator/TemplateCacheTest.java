@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import com.ariht.maven.plugins.config.TestsLogger;
+import com.ariht.maven.plugins.config.io.FileInfo;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TemplateCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final TemplateCompiler templateCompiler = new TemplateCompiler("${", "}");
+
+    @Test
+    public void testTemplateIsReadOnce() throws IOException {
+        final FileInfo template = createTemplate("a.txt", "a=${a}");
+        final TemplateCache templateCache = new TemplateCache(new TestsLogger(), templateCompiler, 1024);
+        templateCache.load(Lists.newArrayList(template));
+        assertTrue(templateCache.isCached(template));
+        assertSame(templateCache.get(template), templateCache.get(template));
+    }
+
+    @Test
+    public void testChangedTemplateIsReRead() throws IOException {
+        final FileInfo template = createTemplate("a.txt", "a=${a}");
+        final TemplateCache templateCache = new TemplateCache(new TestsLogger(), templateCompiler, 1024);
+        templateCache.load(Lists.newArrayList(template));
+        FileUtils.writeStringToFile(template.getFile(), "changed a=${a}");
+        assertEquals("changed a=1", templateCache.get(template).render(ImmutableMap.of("a", "1")));
+    }
+
+    @Test
+    public void testTemplatesBeyondLimitAreNotCached() throws IOException {
+        final FileInfo small = createTemplate("small.txt", "${a}");
+        final FileInfo large = createTemplate("large.txt", "a much larger template ${a}");
+        final TemplateCache templateCache = new TemplateCache(new TestsLogger(), templateCompiler, 10);
+        templateCache.load(Lists.newArrayList(small, large));
+        assertTrue(templateCache.isCached(small));
+        assertFalse(templateCache.isCached(large));
+        assertEquals(4, templateCache.getCacheSize());
+        assertEquals("a much larger template 1", templateCache.get(large).render(ImmutableMap.of("a", "1")));
+    }
+
+    @Test
+    public void testTemplatesBeyondLimitAreOnlySummarised() throws IOException {
+        final FileInfo large = createTemplate("large.txt", "a much larger template ${a}");
+        final TemplateCache templateCache = new TemplateCache(new TestsLogger(), templateCompiler, 10);
+        templateCache.load(Lists.newArrayList(large));
+        assertFalse(templateCache.isCached(large));
+
+        // Same size and timestamp, so only a re-read would notice the change
+        final long lastModified = large.getFile().lastModified();
+        FileUtils.writeStringToFile(large.getFile(), "a much larger template ${b}");
+        assertTrue(large.getFile().setLastModified(lastModified));
+        assertFalse(templateCache.isPassThrough(large));
+        assertEquals(Sets.newHashSet("a"), templateCache.getPlaceholders(large));
+        assertEquals(0, templateCache.getCacheSize());
+    }
+
+    @Test
+    public void testBinaryAndPlaceholderFreeTemplatesPassThrough() throws IOException {
+        final FileInfo binary = createTemplate("keystore.jks", "\u0000binary ${a}");
+        final FileInfo plain = createTemplate("plain.txt", "no placeholders");
+        final FileInfo escaped = createTemplate("escaped.txt", "escaped $${a}");
+        final FileInfo template = createTemplate("a.txt", "a=${a}");
+        final TemplateCache templateCache = new TemplateCache(new TestsLogger(), templateCompiler, 1024, "UTF-8");
+        templateCache.load(Lists.newArrayList(binary, plain, escaped, template));
+        assertTrue(templateCache.isPassThrough(binary));
+        assertTrue(templateCache.isPassThrough(plain));
+        assertFalse(templateCache.isPassThrough(escaped));
+        assertFalse(templateCache.isPassThrough(template));
+        assertEquals(escaped.getFile().length() + template.getFile().length(), templateCache.getCacheSize());
+    }
+
+    private FileInfo createTemplate(final String name, final String content) throws IOException {
+        final File file = temporaryFolder.newFile(name);
+        FileUtils.writeStringToFile(file, content);
+        return new FileInfo(new TestsLogger(), file);
+    }
+}
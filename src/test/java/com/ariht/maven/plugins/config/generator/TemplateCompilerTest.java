@@ -0,0 +1,97 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.generator;
+
+import org.apache.commons.lang.text.StrSubstitutor;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compiled templates must render exactly as StrSubstitutor would have done.
+ */
+public class TemplateCompilerTest {
+
+    private static final String[] TEMPLATES = {
+            "",
+            "no placeholders at all",
+            "${db.host}",
+            "url=jdbc:${db.driver}://${db.host}:${db.port}/${db.name}",
+            "${db.host}${db.port}",
+            "unknown=${not.defined} known=${db.host}",
+            "escaped=$${db.host} real=${db.host}",
+            "shell $CMD $(dirname $0) $$ ${db.port}",
+            "empty=${} after=${db.host}",
+            "unterminated=${db.host and ${db.port}",
+            "trailing prefix ${",
+            "nested=${db.url}",
+            "escape ends placeholder=${db.port$}${db.host}",
+            "value ending in escape=${cost}${db.port} ${cost}$${db.port} ${cost}${not.defined}",
+            "escaped by value=${cost}${cost}${db.host} ${cost}${x${db.port}}",
+    };
+
+    @Test
+    public void testRendersSameAsStrSubstitutor() {
+        final Map<String, String> values = getValues();
+        final TemplateCompiler templateCompiler = new TemplateCompiler("${", "}");
+        final StrSubstitutor strSubstitutor = new StrSubstitutor(values, "${", "}");
+        final Map<String, String> expandedValues = expand(values, strSubstitutor);
+        for (final String template : TEMPLATES) {
+            assertEquals(template, strSubstitutor.replace(template), templateCompiler.compile(template).render(expandedValues));
+        }
+    }
+
+    @Test
+    public void testCustomPrefixAndSuffix() {
+        final Map<String, String> values = getValues();
+        final TemplateCompiler templateCompiler = new TemplateCompiler("@@", "@@");
+        final StrSubstitutor strSubstitutor = new StrSubstitutor(values, "@@", "@@");
+        final String template = "host=@@db.host@@ port=@@db.port@@ escaped=$@@db.host@@ ${db.name}";
+        assertEquals(strSubstitutor.replace(template), templateCompiler.compile(template).render(values));
+    }
+
+    @Test
+    public void testPlaceholdersAreParsedOnce() {
+        final CompiledTemplate compiledTemplate = new TemplateCompiler("${", "}").compile("a=${a} b=${b} a=${a} $${c}");
+        assertEquals(3, compiledTemplate.getPlaceholderCount());
+        assertEquals("a", compiledTemplate.getPlaceholder(0));
+        assertEquals("b", compiledTemplate.getPlaceholder(1));
+        assertEquals("a", compiledTemplate.getPlaceholder(2));
+    }
+
+    private Map<String, String> getValues() {
+        final Map<String, String> values = new LinkedHashMap<String, String>();
+        values.put("db.driver", "postgresql");
+        values.put("db.host", "somehost");
+        values.put("db.port", "5432");
+        values.put("db.name", "live_db");
+        values.put("cost", "5 $");
+        values.put("db.url", "jdbc:${db.driver}://${db.host}:${db.port}/${db.name}");
+        return values;
+    }
+
+    private Map<String, String> expand(final Map<String, String> values, final StrSubstitutor strSubstitutor) {
+        final Map<String, String> expandedValues = new LinkedHashMap<String, String>();
+        for (final Map.Entry<String, String> entry : values.entrySet()) {
+            expandedValues.put(entry.getKey(), strSubstitutor.replace(entry.getValue()));
+        }
+        return expandedValues;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.io;
+
+import com.ariht.maven.plugins.config.TestsLogger;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BuildManifestTest {
+
+    private static final String PARAMETERS = "parameters";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testMissingPropertiesWithSeparatorsAreReadBack() throws Exception {
+        final File manifestFile = new File(temporaryFolder.getRoot(), "output.manifest");
+        final File output = temporaryFolder.newFile("output.properties");
+        FileUtils.writeStringToFile(output, "a=${a|b}\n");
+        final Set<String> missingProperties = new LinkedHashSet<String>(Arrays.asList("a|b", "c,d", "line\nbreak", "back\\slash", "plain"));
+
+        final BuildManifest manifest = BuildManifest.read(manifestFile, PARAMETERS, new TestsLogger());
+        manifest.record(output.getPath(), "template", "filter", missingProperties, "content");
+        manifest.write();
+
+        final BuildManifest previous = BuildManifest.read(manifestFile, PARAMETERS, new TestsLogger());
+        assertTrue(previous.isPreviousBuildFound());
+        assertTrue(previous.isUpToDate(output.getPath(), "template", "filter"));
+        assertEquals(missingProperties, previous.reuse(output.getPath()));
+        assertEquals("content", previous.getRecordedOutputDigest(output.getPath()));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.io;
+
+import com.ariht.maven.plugins.config.TestsLogger;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DirectoryReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File templates;
+
+    @Before
+    public void createTemplates() throws IOException {
+        templates = temporaryFolder.newFolder("templates");
+        FileUtils.writeStringToFile(new File(templates, "top.properties"), "");
+        FileUtils.writeStringToFile(new File(templates, "top.properties.bak"), "");
+        FileUtils.writeStringToFile(new File(templates, "db/db.properties"), "");
+        FileUtils.writeStringToFile(new File(templates, "db/old/db.properties"), "");
+        FileUtils.writeStringToFile(new File(templates, "web/web.xml"), "");
+        FileUtils.writeStringToFile(new File(templates, "web/web.xml.bak"), "");
+    }
+
+    @Test
+    public void testSubDirectoriesAreRelativeToBase() throws Exception {
+        final Map<String, String> found = read(null);
+        assertEquals(6, found.size());
+        assertEquals("", found.get("top.properties"));
+        assertEquals(File.separator + "db", found.get("db.properties"));
+        assertEquals(File.separator + "db" + File.separator + "old", found.get("old/db.properties"));
+    }
+
+    @Test
+    public void testPathsAndPatternsAreIgnored() throws Exception {
+        final Map<String, String> found = read(Lists.newArrayList(
+                new File(templates, "db/old").getAbsolutePath(),
+                "glob:{**/,}*.bak"));
+        assertEquals(3, found.size());
+        assertEquals(File.separator + "db", found.get("db.properties"));
+        assertEquals(File.separator + "web", found.get("web.xml"));
+        assertEquals("", found.get("top.properties"));
+    }
+
+    @Test
+    public void testRegexIgnoresWholeDirectories() throws Exception {
+        final Map<String, String> found = read(Lists.newArrayList("regex:db"));
+        assertEquals(4, found.size());
+        assertNull(found.get("db.properties"));
+    }
+
+    @Test
+    public void testOnlyIncludedFilesAreRead() throws Exception {
+        final Map<String, String> found = read(Lists.newArrayList("glob:{**/,}*.bak"), Lists.newArrayList("db/*", "web/web"));
+        assertEquals(2, found.size());
+        assertEquals(File.separator + "db", found.get("db.properties"));
+        assertEquals(File.separator + "web", found.get("web.xml"));
+    }
+
+    private Map<String, String> read(final List<String> ignores) throws Exception {
+        return read(ignores, null);
+    }
+
+    /**
+     * Relative sub-directory by file name, names qualified by their parent below db.
+     */
+    private Map<String, String> read(final List<String> ignores, final List<String> includes) throws Exception {
+        final Map<String, String> found = new TreeMap<String, String>();
+        for (final FileInfo fileInfo : new DirectoryReader(new TestsLogger()).readFiles(templates.getPath(), ignores, includes)) {
+            final String parentName = fileInfo.getFile().getParentFile().getName();
+            found.put(parentName.equals("old") ? "old/" + fileInfo.getName() : fileInfo.getName(), fileInfo.getRelativeSubDirectory());
+        }
+        return found;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014 Software Design Studio Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ariht.maven.plugins.config.io;
+
+import com.ariht.maven.plugins.config.TestsLogger;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FilterCacheTest {
+
+    private static final String SETTINGS = "settings";
+    private static final Map<String, String> DEV_VALUES = ImmutableMap.of("db.host", "dev-db", "unicode", "été ☃");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File cacheFile;
+    private File dev;
+    private File prod;
+
+    @Before
+    public void createFilters() throws Exception {
+        cacheFile = new File(temporaryFolder.getRoot(), "target/filters.cache");
+        dev = temporaryFolder.newFile("dev.filter");
+        FileUtils.writeStringToFile(dev, "db.host=dev-db\n");
+        prod = temporaryFolder.newFile("prod.filter");
+        FileUtils.writeStringToFile(prod, "db.host=prod-db\n");
+    }
+
+    @Test
+    public void testUnchangedFiltersAreReadFromCache() throws Exception {
+        writeCache();
+
+        final FilterCache filterCache = FilterCache.read(cacheFile, SETTINGS, new TestsLogger());
+        assertEquals(DEV_VALUES, filterCache.get(dev.getPath(), FilterCache.digest(Lists.newArrayList(dev))));
+        assertEquals(1, filterCache.getHits());
+
+        FileUtils.writeStringToFile(prod, "db.host=new-prod-db\n");
+        assertNull(filterCache.get(prod.getPath(), FilterCache.digest(Lists.newArrayList(prod))));
+        assertNull(filterCache.get("other.filter", FilterCache.digest(Lists.newArrayList(dev))));
+    }
+
+    @Test
+    public void testFiltersNotReadKeepTheirEntries() throws Exception {
+        writeCache();
+        final FilterCache filterCache = FilterCache.read(cacheFile, SETTINGS, new TestsLogger());
+        filterCache.put(prod.getPath(), "changed", ImmutableMap.of("db.host", "changed"));
+        filterCache.write(Lists.newArrayList(dev.getPath(), prod.getPath()), new TestsLogger());
+
+        final FilterCache rewritten = FilterCache.read(cacheFile, SETTINGS, new TestsLogger());
+        assertEquals(DEV_VALUES, rewritten.get(dev.getPath(), FilterCache.digest(Lists.newArrayList(dev))));
+        assertEquals("changed", rewritten.get(prod.getPath(), "changed").get("db.host"));
+    }
+
+    @Test
+    public void testOtherSettingsAreIgnored() throws Exception {
+        writeCache();
+        final FilterCache filterCache = FilterCache.read(cacheFile, "other settings", new TestsLogger());
+        assertNull(filterCache.get(dev.getPath(), FilterCache.digest(Lists.newArrayList(dev))));
+    }
+
+    @Test
+    public void testCorruptedCacheIsIgnored() throws Exception {
+        writeCache();
+        final byte[] content = FileUtils.readFileToByteArray(cacheFile);
+        content[content.length / 2] ^= 0x55;
+        FileUtils.writeByteArrayToFile(cacheFile, content);
+        assertNull(FilterCache.read(cacheFile, SETTINGS, new TestsLogger()).get(dev.getPath(), FilterCache.digest(Lists.newArrayList(dev))));
+
+        final byte[] truncated = new byte[content.length / 3];
+        System.arraycopy(content, 0, truncated, 0, truncated.length);
+        FileUtils.writeByteArrayToFile(cacheFile, truncated);
+        assertNull(FilterCache.read(cacheFile, SETTINGS, new TestsLogger()).get(dev.getPath(), FilterCache.digest(Lists.newArrayList(dev))));
+    }
+
+    private void writeCache() throws Exception {
+        final FilterCache filterCache = FilterCache.read(cacheFile, SETTINGS, new TestsLogger());
+        filterCache.put(dev.getPath(), FilterCache.digest(Lists.newArrayList(dev)), DEV_VALUES);
+        filterCache.put(prod.getPath(), FilterCache.digest(Lists.newArrayList(prod)), ImmutableMap.of("db.host", "prod-db"));
+        filterCache.write(Lists.newArrayList(dev.getPath(), prod.getPath()), new TestsLogger());
+    }
+}
@@ -35,6 +35,47 @@ public class ConfigGeneratorParametersBuilderTest {
         assertEquals(ConfigGeneratorParametersTest.FILTER_SOURCE_DEFAULT_PROPERTY_NAME, parameters.getFilterSourcePropertyName());
         assertEquals(ConfigGeneratorParametersTest.DEFAULT_PROPERTY_PREFIX, parameters.getPropertyPrefix());
         assertEquals(ConfigGeneratorParametersTest.DEFAULT_PROPERTY_SUFFIX, parameters.getPropertySuffix());
+        assertEquals(1, parameters.getThreads());
+    }
+
+    @Test
+    public void testThreadsAsNumber() {
+        final ConfigGeneratorParameters parameters = new ConfigGeneratorParametersBuilder(getLogger()).withThreads("4").build();
+        assertEquals(4, parameters.getThreads());
+    }
+
+    @Test
+    public void testThreadsPerCore() {
+        final int cores = Runtime.getRuntime().availableProcessors();
+        assertEquals(cores, new ConfigGeneratorParametersBuilder(getLogger()).withThreads("1C").build().getThreads());
+        assertEquals(2 * cores, new ConfigGeneratorParametersBuilder(getLogger()).withThreads("2c").build().getThreads());
+        assertEquals(1, new ConfigGeneratorParametersBuilder(getLogger()).withThreads("0.01C").build().getThreads());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroThreadsThrowsException() {
+        new ConfigGeneratorParametersBuilder(getLogger()).withThreads("0");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidThreadsThrowsException() {
+        new ConfigGeneratorParametersBuilder(getLogger()).withThreads("many");
+    }
+
+    @Test
+    public void testPropertiesLoaderByName() {
+        assertEquals(PropertiesLoader.COMMONS_CONFIGURATION, new ConfigGeneratorParametersBuilder(getLogger()).build().getPropertiesLoader());
+        assertEquals(PropertiesLoader.NATIVE, new ConfigGeneratorParametersBuilder(getLogger()).withPropertiesLoader("Native").build().getPropertiesLoader());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownPropertiesLoaderThrowsException() {
+        new ConfigGeneratorParametersBuilder(getLogger()).withPropertiesLoader("yaml");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedArchiveFormatThrowsException() {
+        new ConfigGeneratorParametersBuilder(getLogger()).withArchiveFormat("tar.gz");
     }
 
 }
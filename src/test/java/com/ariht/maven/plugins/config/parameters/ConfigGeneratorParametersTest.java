@@ -54,6 +54,8 @@ public class ConfigGeneratorParametersTest {
         assertEquals(FILTER_SOURCE_DEFAULT_PROPERTY_NAME, parameters.getFilterSourcePropertyName());
         assertEquals(DEFAULT_PROPERTY_PREFIX, parameters.getPropertyPrefix());
         assertEquals(DEFAULT_PROPERTY_SUFFIX, parameters.getPropertySuffix());
+        assertEquals(ConfigGeneratorParameters.DEFAULT_MAX_TEMPLATE_CACHE_SIZE, parameters.getMaxTemplateCacheSize());
+        assertEquals(ConfigGeneratorParameters.DEFAULT_STREAMING_TEMPLATE_SIZE, parameters.getStreamingTemplateSize());
     }
 
     @Test
@@ -122,4 +124,18 @@ public class ConfigGeneratorParametersTest {
         assertFalse(configGeneratorParameters.isFailOnMissingProperty());
     }
 
+    @Test
+    public void testSettingMaxTemplateCacheSize() {
+        final ConfigGeneratorParameters configGeneratorParameters = new ConfigGeneratorParameters();
+        configGeneratorParameters.setMaxTemplateCacheSize(1024L);
+        assertEquals(1024L, configGeneratorParameters.getMaxTemplateCacheSize());
+    }
+
+    @Test
+    public void testSettingStreamingTemplateSize() {
+        final ConfigGeneratorParameters configGeneratorParameters = new ConfigGeneratorParameters();
+        configGeneratorParameters.setStreamingTemplateSize(2048L);
+        assertEquals(2048L, configGeneratorParameters.getStreamingTemplateSize());
+    }
+
 }